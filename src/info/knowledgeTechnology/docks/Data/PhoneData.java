@@ -25,9 +25,9 @@ package info.knowledgeTechnology.docks.Data;
 
 
 import info.knowledgeTechnology.docks.Phoneme.Phoneme;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeAlphabet;
 import info.knowledgeTechnology.docks.Phoneme.PhonemeSubstitution;
 import edu.cmu.sphinx.frontend.Data;
-import edu.cmu.sphinx.util.LogMath;
 /**
  * This class is used by the Phone Frontend as input
  * @author 7twiefel
@@ -40,8 +40,9 @@ public class PhoneData implements Data {
 	 * 
 	 */
 	String phoneID;
-	static LogMath logMath =  LogMath.getInstance();
 	int method;
+	//scores against all phonemes in log domain, indexed by the IDs of the PhonemeAlphabet
+	float[] logScores;
 	
 	/**
 	 * @see Phoneme.Categories.PhonemeSubstitution
@@ -49,8 +50,19 @@ public class PhoneData implements Data {
 	 * @param method the phoneme substitution method 
 	 */
 	public PhoneData(String phoneID, int method) {
+		this(phoneID, method, PhonemeSubstitution.getInstance(method)
+				.getLogScoreRow(PhonemeAlphabet.getId(phoneID) & 0xFF));
+	}
+
+	/**
+	 * @param phoneID the phoneme representation
+	 * @param method the phoneme substitution method 
+	 * @param logScores scores of the phoneme against all phonemes in log domain (see PhonemeSubstitution.getLogScoreRow)
+	 */
+	public PhoneData(String phoneID, int method, float[] logScores) {
 		this.phoneID = phoneID;
 		this.method = method;
+		this.logScores = logScores;
 
   
 
@@ -64,7 +76,16 @@ public class PhoneData implements Data {
 	 * @return
 	 */
 	public float getConfusionScore(String otherPhone, int numberOfTimesUsed) {
-		return logMath.linearToLog(PhonemeSubstitution.getInstance(method).getScore(phoneID, otherPhone));
+		return logScores[PhonemeAlphabet.getId(otherPhone) & 0xFF];
+	}
+
+	/**
+	 * returns the score between two phonemes
+	 * @param otherPhone ID of the other phoneme in the PhonemeAlphabet
+	 * @return
+	 */
+	public float getConfusionScore(int otherPhone) {
+		return logScores[otherPhone];
 	}
 	
 	@Override
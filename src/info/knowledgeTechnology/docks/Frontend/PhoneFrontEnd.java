@@ -22,6 +22,8 @@
 package info.knowledgeTechnology.docks.Frontend;
 
 import info.knowledgeTechnology.docks.Data.PhoneData;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeAlphabet;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeSubstitution;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -55,6 +57,8 @@ public class PhoneFrontEnd extends FrontEnd {
 	public void setSubstitutionMethod( int substitutionMethod)
 	{
 		this.substitutionMethod = substitutionMethod;
+		//the table is created while the rest of the recognizer is set up
+		PhonemeSubstitution.preload(substitutionMethod);
 	}
 	
 	/**
@@ -63,16 +67,20 @@ public class PhoneFrontEnd extends FrontEnd {
 	 */
 	public void addPhonemes(String[] phonemes)
 	{
+		//the scores of each phoneme are looked up once, the search only reads them
+		PhonemeSubstitution substitution = PhonemeSubstitution.getInstance(substitutionMethod);
+		float[] silence = substitution.getLogScoreRow(PhonemeAlphabet.getId("SIL") & 0xFF);
 		phones.add(new DataStartSignal(0));
-		phones.add(new PhoneData("SIL",substitutionMethod));
+		phones.add(new PhoneData("SIL",substitutionMethod,silence));
 		for(String p: phonemes)
 		{
-			phones.add(new PhoneData(p,substitutionMethod));
-			phones.add(new PhoneData(p,substitutionMethod));
+			float[] logScores = substitution.getLogScoreRow(PhonemeAlphabet.getId(p) & 0xFF);
+			phones.add(new PhoneData(p,substitutionMethod,logScores));
+			phones.add(new PhoneData(p,substitutionMethod,logScores));
 		}
-		phones.add(new PhoneData("SIL",substitutionMethod));
-		phones.add(new PhoneData("SIL",substitutionMethod));
-		phones.add(new PhoneData("SIL",substitutionMethod));
+		phones.add(new PhoneData("SIL",substitutionMethod,silence));
+		phones.add(new PhoneData("SIL",substitutionMethod,silence));
+		phones.add(new PhoneData("SIL",substitutionMethod,silence));
 		phones.add(new DataEndSignal(100));
 	}
 
@@ -0,0 +1,218 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech 
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package info.knowledgeTechnology.docks.Phoneme;
+
+import info.knowledgeTechnology.docks.Data.Result;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.cmu.sphinx.linguist.g2p.G2PConverter;
+import edu.cmu.sphinx.util.NISTAlign;
+
+/**
+ * learns phoneme substitution scores from results of a speech recognizer (Google Reverse heuristic).
+ * the input has one result per line as "hypothesis;reference". reference and hypothesis are converted
+ * to phonemes and aligned, and the substitutions of each phoneme by each other phoneme are counted.
+ * lines are processed in batches on a pool of workers, each with its own count matrix
+ */
+public class ConfusionTrainer {
+
+	//number of lines processed by a worker at once
+	private static final int BATCH_SIZE = 512;
+
+	private final PhonemeCreator pc;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+
+	//aligners keep state between calls, so each thread has its own
+	private static final ThreadLocal<NISTAlign> aligners = new ThreadLocal<NISTAlign>() {
+		@Override
+		protected NISTAlign initialValue() {
+			return new NISTAlign(false, false);
+		}
+	};
+
+	/**
+	 * 
+	 * @param pc the phoneme creator used to convert references and hypotheses
+	 */
+	public ConfusionTrainer(PhonemeCreator pc) {
+		this.pc = pc;
+		for (int i = 0; i < PhonemeSubstitution.signs.length; i++)
+			ids.put(PhonemeSubstitution.signs[i], i);
+	}
+
+	/**
+	 * 
+	 * @param threads number of workers (number of processors by default)
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be at least 1");
+		this.threads = threads;
+	}
+
+	/**
+	 * counts how often each reference phoneme is aligned to each hypothesis phoneme
+	 * @param refHypFile file with one "hypothesis;reference" per line
+	 * @return counts indexed by reference and hypothesis phoneme in the order of the PhonemeAlphabet
+	 * @throws IOException
+	 */
+	public long[][] count(String refHypFile) throws IOException {
+		int size = PhonemeSubstitution.signs.length;
+		long[][] counts = new long[size][size];
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		//G2P converters are not shared between threads. a batch takes a free one, so at most one per worker is created
+		final BlockingQueue<G2PConverter> converters = new ArrayBlockingQueue<G2PConverter>(threads);
+		BufferedReader in = new BufferedReader(new FileReader(refHypFile));
+		try {
+			//batches being counted, at most two per worker to bound the memory used
+			ArrayDeque<Future<long[][]>> pending = new ArrayDeque<Future<long[][]>>();
+			ArrayList<String> batch = new ArrayList<String>(BATCH_SIZE);
+			String line;
+			while (true) {
+				line = in.readLine();
+				if (line != null)
+					batch.add(line);
+				if (batch.size() == BATCH_SIZE || (line == null && !batch.isEmpty())) {
+					final ArrayList<String> lines = batch;
+					pending.add(workers.submit(new Callable<long[][]>() {
+						@Override
+						public long[][] call() {
+							G2PConverter converter = converters.poll();
+							if (converter == null)
+								converter = pc.createConverter();
+							try {
+								return countBatch(lines, converter);
+							} finally {
+								converters.offer(converter);
+							}
+						}
+					}));
+					batch = new ArrayList<String>(BATCH_SIZE);
+				}
+				while (!pending.isEmpty() && (pending.size() >= 2 * threads || line == null))
+					add(counts, pending.poll().get());
+				if (line == null)
+					break;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while counting " + refHypFile);
+		} catch (ExecutionException e) {
+			throw new IOException("could not count " + refHypFile, e.getCause());
+		} finally {
+			workers.shutdownNow();
+			in.close();
+		}
+		return counts;
+	}
+
+	private static void add(long[][] counts, long[][] other) {
+		for (int i = 0; i < counts.length; i++)
+			for (int j = 0; j < counts[i].length; j++)
+				counts[i][j] += other[i][j];
+	}
+
+	/**
+	 * counts the substitutions of a batch of lines
+	 * @param lines
+	 * @param converter G2P converter used by no other thread at the moment
+	 * @return
+	 */
+	private long[][] countBatch(ArrayList<String> lines, G2PConverter converter) {
+		int size = PhonemeSubstitution.signs.length;
+		long[][] counts = new long[size][size];
+		NISTAlign aligner = aligners.get();
+		for (String line : lines) {
+			String[] strLineSplit = line.split(";");
+			if (strLineSplit.length < 2)
+				continue;
+
+			//get the phonemes for reference and hypothesis
+			Result r = new Result();
+			r.addResult(strLineSplit[1]);
+			r.addResult(strLineSplit[0]);
+			ArrayList<PhonemeContainer> phonemesSpeech = pc.getPhonemes(r, converter, false);
+			if (phonemesSpeech.size() < 2 || phonemesSpeech.get(0).getPhonemes() == null
+					|| phonemesSpeech.get(1).getPhonemes() == null)
+				continue;
+
+			//align ref and hyp
+			aligner.align(join(phonemesSpeech.get(0).getPhonemes()), join(phonemesSpeech.get(1).getPhonemes()));
+			String[] refWords = aligner.getAlignedReference().replaceAll(" +", " ").split(" ");
+			String[] hypWords = aligner.getAlignedHypothesis().replaceAll(" +", " ").split(" ");
+
+			//calculate the number of substitutions for each phoneme by each other phoneme
+			for (int i = 0; i < Math.min(refWords.length, hypWords.length); i++) {
+				Integer ref = ids.get(refWords[i].toUpperCase());
+				Integer hyp = ids.get(hypWords[i].toUpperCase());
+				if (ref != null && hyp != null)
+					counts[ref][hyp]++;
+			}
+		}
+		return counts;
+	}
+
+	private static String join(String[] phonemes) {
+		StringBuilder joined = new StringBuilder();
+		for (String s : phonemes)
+			joined.append(s).append(' ');
+		return joined.toString();
+	}
+
+	/**
+	 * learns substitution scores
+	 * @param refHypFile file with one "hypothesis;reference" per line
+	 * @return the substitutor, it can be stored with save and registered with PhonemeSubstitution.register
+	 * @throws IOException
+	 */
+	public PhonemeSubstitution train(String refHypFile) throws IOException {
+		return PhonemeSubstitution.fromCounts(count(refHypFile));
+	}
+
+	/**
+	 * learns substitution scores from a file of results and stores them as a table
+	 * that can be loaded with PhonemeSubstitution.load
+	 * @param args file with one "hypothesis;reference" per line, file to write the table to
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("usage: ConfusionTrainer <refhyp file> <scores file>");
+			return;
+		}
+		new ConfusionTrainer(PhonemeCreator.getInstance()).train(args[0]).save(args[1]);
+	}
+}
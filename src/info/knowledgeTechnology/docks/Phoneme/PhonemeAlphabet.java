@@ -0,0 +1,112 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech 
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package info.knowledgeTechnology.docks.Phoneme;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * maps phoneme symbols to byte IDs, so phoneme sequences can be compared without String objects.
+ * the 40 phonemes of the substitution table get the IDs 0-39 in the order of PhonemeSubstitution,
+ * unknown symbols are added on first use
+ */
+public class PhonemeAlphabet {
+
+	/**
+	 * maximal number of distinct symbols a byte can hold
+	 */
+	public static final int MAX_SIZE = 256;
+
+	private static HashMap<String, Byte> ids = new HashMap<String, Byte>();
+	private static ArrayList<String> symbols = new ArrayList<String>();
+
+	static {
+		for (String s : PhonemeSubstitution.signs)
+			getId(s);
+	}
+
+	private PhonemeAlphabet() {
+	}
+
+	/**
+	 * returns the ID of a phoneme, adds it to the alphabet if it is unknown
+	 * @param phoneme phoneme symbol
+	 * @return the ID of the phoneme
+	 */
+	public static synchronized byte getId(String phoneme) {
+		Byte id = ids.get(phoneme);
+		if (id == null) {
+			if (symbols.size() >= MAX_SIZE)
+				throw new IllegalStateException("phoneme alphabet is full, cannot add "
+						+ phoneme);
+			id = (byte) symbols.size();
+			ids.put(phoneme, id);
+			symbols.add(phoneme);
+		}
+		return id;
+	}
+
+	/**
+	 * 
+	 * @param id ID of a phoneme
+	 * @return the phoneme symbol
+	 */
+	public static synchronized String getPhoneme(byte id) {
+		return symbols.get(id & 0xFF);
+	}
+
+	/**
+	 * 
+	 * @return number of symbols known so far
+	 */
+	public static synchronized int size() {
+		return symbols.size();
+	}
+
+	/**
+	 * converts a phoneme sequence to a sequence of IDs
+	 * @param phonemes phoneme sequence
+	 * @return ID sequence
+	 */
+	public static synchronized byte[] encode(String[] phonemes) {
+		if (phonemes == null)
+			return null;
+		byte[] result = new byte[phonemes.length];
+		for (int i = 0; i < phonemes.length; i++)
+			result[i] = getId(phonemes[i]);
+		return result;
+	}
+
+	/**
+	 * converts a sequence of IDs back to a phoneme sequence
+	 * @param phonemeIds ID sequence
+	 * @return phoneme sequence
+	 */
+	public static synchronized String[] decode(byte[] phonemeIds) {
+		if (phonemeIds == null)
+			return null;
+		String[] result = new String[phonemeIds.length];
+		for (int i = 0; i < phonemeIds.length; i++)
+			result[i] = symbols.get(phonemeIds[i] & 0xFF);
+		return result;
+	}
+}
@@ -20,6 +20,8 @@
  * 7twiefel@informatik.uni-hamburg.de
  */
 package info.knowledgeTechnology.docks.Phoneme;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 
@@ -35,12 +37,16 @@ public class PhonemeContainer implements Serializable{
 	private String[] phonemes;
 	private String[] words;
 	private String[] phonemesSorted;
-	private ArrayList<String> phonemesList = new ArrayList<String>();
+	private byte[] phonemeIds;
+	//file and index of a sentence loaded from a PhonemeDBFile, its words and IDs are read when needed
+	private transient PhonemeDBFile source;
+	private transient int index;
 
 
 	public void addPhonemesNoJep(String[] phonemeSequence)
 	{
 		phonemes=phonemeSequence;
+		phonemeIds=PhonemeAlphabet.encode(phonemes);
 	}
 
 /**
@@ -53,6 +59,17 @@ public class PhonemeContainer implements Serializable{
 		phonemesSorted = new String[words.length];
 
 	}
+
+/**
+ * creates a container for a sentence of a PhonemeDBFile. its words and phonemes
+ * are read from the file when they are needed
+ * @param source the mapped file
+ * @param index index of the sentence in the file
+ */
+	PhonemeContainer(PhonemeDBFile source, int index) {
+		this.source = source;
+		this.index = index;
+	}
 	
 /**
  * adds a phoneme for a word to the phoneme sequence
@@ -78,9 +95,26 @@ public class PhonemeContainer implements Serializable{
 	 * @return the final phoneme sequence
 	 */
 	public String[] getPhonemes() {
+		if(phonemes==null && getPhonemeIds()!=null)
+			phonemes=PhonemeAlphabet.decode(phonemeIds);
 		return phonemes;
 	}
+	
+	/**
+	 * 
+	 * @return the final phoneme sequence as IDs of the PhonemeAlphabet
+	 */
+	public byte[] getPhonemeIds() {
+		if(phonemeIds==null && source!=null)
+			phonemeIds=source.getPhonemeIds(index);
+		//containers loaded from older caches do not have the IDs yet
+		if(phonemeIds==null)
+			phonemeIds=PhonemeAlphabet.encode(phonemes);
+		return phonemeIds;
+	}
 	public String[] getWords() {
+		if(words==null && source!=null)
+			words=source.getSentence(index).split(" ");
 		return words;
 	}
 
@@ -89,7 +123,7 @@ public class PhonemeContainer implements Serializable{
 	 */
 	public void finalizePhonemes()
 	{
-		
+		ArrayList<String> phonemesList = new ArrayList<String>();
 		for(int i = 0; i<phonemesSorted.length;i++)
 		{
 
@@ -105,6 +139,7 @@ public class PhonemeContainer implements Serializable{
 		}
 		phonemes=new String[phonemesList.size()];
 		phonemesList.toArray(phonemes);
+		phonemeIds=PhonemeAlphabet.encode(phonemes);
 	}
 	
 	/**
@@ -112,7 +147,7 @@ public class PhonemeContainer implements Serializable{
 	 */
 	public void print()
 	{
-		for(String w : words)
+		for(String w : getWords())
 		{
 			if(w==null)
 				break;
@@ -120,7 +155,7 @@ public class PhonemeContainer implements Serializable{
 
 		}
 		System.out.print(": ");
-		for(String p : phonemes)
+		for(String p : getPhonemes())
 		{			
 			if(p==null)
 				break;
@@ -135,7 +170,7 @@ public class PhonemeContainer implements Serializable{
 	 */
 	public void printShort()
 	{
-		for(String w : words)
+		for(String w : getWords())
 		{
 			if(w==null)
 				break;
@@ -151,6 +186,9 @@ public class PhonemeContainer implements Serializable{
 	 */
 	public String getResult()
 	{
+		//the sentence is stored as a whole in the file
+		if(words==null && source!=null)
+			return source.getSentence(index);
 		String result = "";
 		for(String w : words)
 		{
@@ -164,4 +202,12 @@ public class PhonemeContainer implements Serializable{
 		return result;
 	}
 
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		//a container read from a file is written with its words and phonemes
+		getWords();
+		getPhonemeIds();
+		out.defaultWriteObject();
+	}
+
 }
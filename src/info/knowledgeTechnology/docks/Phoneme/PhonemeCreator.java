@@ -24,8 +24,9 @@ import info.knowledgeTechnology.docks.Data.Result;
 import info.knowledgeTechnology.docks.Utils.FileLoader;
 import info.knowledgeTechnology.docks.Utils.Printer;
 
+import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
@@ -34,8 +35,20 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import edu.cmu.sphinx.linguist.g2p.G2PConverter;
 import edu.cmu.sphinx.linguist.g2p.Path;
@@ -54,6 +67,13 @@ public class PhonemeCreator {
 	
 	private String TAG = "PhonemeCreator";
 	private static PhonemeCreator instance;
+	private String sentenceFile;
+	private PhonemeNgramIndex index;
+	//pronunciations of whole n-best entries, shared by all instances as they use the same G2P model
+	private static final PronunciationCache phraseCache = new PronunciationCache(10000);
+	//pronunciations of single words created by G2P
+	private static final PronunciationCache wordCache = new PronunciationCache(50000);
+	private PronunciationDictionary dictionary;
 
 
 
@@ -75,6 +95,30 @@ public class PhonemeCreator {
 	 * @return
 	 */
 	public ArrayList<PhonemeContainer> getPhonemes(Result r) {
+		if(r==null) return null;
+		return getPhonemes(r, getG2PDecoder());
+	}
+
+	/**
+	 * like getPhonemes(Result), but uses the given G2P converter. several threads can convert results
+	 * at once if each uses its own converter (see createConverter)
+	 * @param r Result received from a speech recognizer or postprocessor. needs to contain 1 result as string as a minimum
+	 * @param decoder G2P converter used by no other thread at the moment
+	 * @return
+	 */
+	public ArrayList<PhonemeContainer> getPhonemes(Result r, G2PConverter decoder) {
+		return getPhonemes(r, decoder, true);
+	}
+
+	/**
+	 * like getPhonemes(Result, G2PConverter). bulk conversions of mostly distinct sentences should not use the
+	 * phrase cache, it would only evict the hypotheses worth keeping and make all threads wait for its lock
+	 * @param r Result received from a speech recognizer or postprocessor. needs to contain 1 result as string as a minimum
+	 * @param decoder G2P converter used by no other thread at the moment
+	 * @param usePhraseCache whether converted sentences are looked up in and added to the phrase cache
+	 * @return
+	 */
+	public ArrayList<PhonemeContainer> getPhonemes(Result r, G2PConverter decoder, boolean usePhraseCache) {
 		Printer.printWithTimeF(TAG, "getting Phonemes");
 		
 		if(r==null) return null;
@@ -92,38 +136,14 @@ public class PhonemeCreator {
 				for (String s : rawResults) {
 					Printer.printWithTimeF(TAG, "raw result: "+s);
 
-					s=s.replaceAll("[^a-zA-Z 0-9]", "");
-					s=s.replaceAll(" +", " ");
+					s=clean(s);
 					if(s.equals(""))
 					{
 						rawResults.remove(s);
 						continue;
 					}
-					if(s.charAt(0)==' ')
-						s=s.substring(1);
-
-					
-					//System.out.println("S: "+s);
-					//split the sentences to words and add theses to the args for SequiturG2P
-					
-					String[] words = s.toLowerCase().split(" ");
-					
-					PhonemeContainer pc = new PhonemeContainer(words);
-
-					ArrayList<Path> paths = g2pDecoder.phoneticize(s, 1);
-					//System.out.println("Sphinx G2P");
-
-					
-					for (Path p : paths) {
-						 //System.out.println(p.getPath());
-
-							String[] phonemes=new String[p.getPath().size()];
-							p.getPath().toArray(phonemes);
-							 pc.addPhonemesNoJep(phonemes);
-						 break;
-					}
-				
-					resultsWithPhonemes.add(pc);
+
+					resultsWithPhonemes.add(createContainer(s, decoder, usePhraseCache));
 				}
 
 			} catch (Exception e) {
@@ -137,8 +157,150 @@ public class PhonemeCreator {
 		return resultsWithPhonemes;
 	}
 	
+
+	/**
+	 * removes special characters and redundant spaces
+	 * @param s a raw result
+	 * @return the cleaned result, empty if nothing is left
+	 */
+	private static String clean(String s) {
+		s=s.replaceAll("[^a-zA-Z 0-9]", "");
+		s=s.replaceAll(" +", " ");
+		if(s.length()>0 && s.charAt(0)==' ')
+			s=s.substring(1);
+		return s;
+	}
+
+	/**
+	 * converts a cleaned result to phonemes
+	 * @param s the cleaned result
+	 * @param decoder the G2P converter to use for words or sentences that are not cached
+	 * @param usePhraseCache whether the sentence is looked up in and added to the phrase cache
+	 * @return the container with the words and phonemes of s
+	 */
+	private PhonemeContainer createContainer(String s, G2PConverter decoder, boolean usePhraseCache) {
+		//System.out.println("S: "+s);
+		//split the sentences to words and add theses to the args for SequiturG2P
+		
+		String[] words = s.toLowerCase().split(" ");
+		
+		PhonemeContainer pc = new PhonemeContainer(words);
+
+		//in word mode the sentence is put together from the pronunciations of its words
+		if (dictionary != null && addWordPhonemes(pc, words, decoder))
+			return pc;
+
+		//repeated hypotheses do not need to be decoded again
+		String[] phonemes = usePhraseCache ? phraseCache.get(s) : null;
+		if (phonemes == null)
+		{
+			phonemes = phoneticize(s, decoder);
+			if (usePhraseCache)
+				phraseCache.put(s, phonemes);
+		}
+		if (phonemes != null)
+			pc.addPhonemesNoJep(phonemes);
+		return pc;
+	}
+
+	/**
+	 * runs G2P on a sentence or word
+	 * @param s the graphemes
+	 * @param decoder the G2P converter
+	 * @return the best phoneme sequence, or null if there is none
+	 */
+	private static String[] phoneticize(String s, G2PConverter decoder) {
+		ArrayList<Path> paths = decoder.phoneticize(s, 1);
+		//System.out.println("Sphinx G2P");
+		for (Path p : paths) {
+			String[] phonemes = new String[p.getPath().size()];
+			p.getPath().toArray(phonemes);
+			return phonemes;
+		}
+		return null;
+	}
+
+	/**
+	 * adds the phonemes of each word to the container. words are looked up in the dictionary,
+	 * then in the word cache, and only words found in neither are converted by G2P
+	 * @param pc the container for the sentence
+	 * @param words the words of the sentence in lower case
+	 * @param decoder the G2P converter
+	 * @return false if a word has no pronunciation
+	 */
+	private boolean addWordPhonemes(PhonemeContainer pc, String[] words, G2PConverter decoder) {
+		for (String w : words) {
+			String[] phonemes = dictionary.get(w);
+			if (phonemes == null)
+				phonemes = wordCache.get(w);
+			if (phonemes == null) {
+				phonemes = phoneticize(w, decoder);
+				if (phonemes == null || phonemes.length == 0)
+					return false;
+				wordCache.put(w, phonemes);
+			}
+			StringBuilder seq = new StringBuilder();
+			for (String p : phonemes) {
+				if (seq.length() > 0)
+					seq.append(' ');
+				seq.append(p);
+			}
+			pc.tryAddPhonemeSequence(w, seq.toString());
+		}
+		pc.finalizePhonemes();
+		return true;
+	}
+
+	/**
+	 * switches to word mode: sentences are split into words which are looked up in the dictionary
+	 * and only out of vocabulary words are converted by G2P. the phonemes of the words are concatenated
+	 * @param dictionary pronunciations of single words, an empty dictionary converts all words by G2P.
+	 * null converts whole sentences by G2P (default).
+	 * this only applies to results converted afterwards, pass the dictionary to the constructor to convert the sentence list in word mode
+	 */
+	public void setDictionary(PronunciationDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	/**
+	 * 
+	 * @return how phonemes are created: null if whole sentences are converted by G2P,
+	 * otherwise word mode and the fingerprint of the dictionary
+	 */
+	private String getMode() {
+		return dictionary == null ? null : "words " + dictionary.getFingerprint();
+	}
+
+	/**
+	 * 
+	 * @param mode the mode a data base was created in
+	 * @return true if it is the current mode
+	 */
+	private boolean isCurrentMode(String mode) {
+		String current = getMode();
+		return current == null ? mode == null : current.equals(mode);
+	}
+	
+	/**
+	 * 
+	 * @return the cache of pronunciations of single words converted by G2P in word mode
+	 */
+	public static PronunciationCache getWordCache() {
+		return wordCache;
+	}
+	
+	/**
+	 * 
+	 * @return the cache of pronunciations of whole n-best entries, e.g. to read its hit and miss counters
+	 */
+	public static PronunciationCache getPhraseCache() {
+		return phraseCache;
+	}
 	
 	private G2PConverter g2pDecoder; 
+	private URL g2pModel;
+	//number of sentences converted by a worker at once when filling the data base
+	private static final int BATCH_SIZE = 256;
 	
 	/**
 	 * creates a new phoneme creator. used when no precached results of a list of sentences should be loaded
@@ -192,13 +354,41 @@ public class PhonemeCreator {
 //        }
 		URL sequiturSphinxModel = FileLoader.resolve("g2p/sequitur/cmudict_sequitur.fst.ser");
 		System.out.println(sequiturSphinxModel);
+		g2pModel = sequiturSphinxModel;
+		g2pDecoder = createConverter();
+		
+	}	
+
+	/**
+	 * creates a phoneme creator for a phoneme data base that was converted before, e.g. to share it
+	 * between postprocessors. the G2P model is loaded when the first result is converted
+	 * @param pdb
+	 */
+	public PhonemeCreator(PhonemeDB pdb)
+	{
+		this.pdb = pdb;
+	}
+
+	/**
+	 * creates a G2P converter. converters must not be used by several threads at once,
+	 * so each thread converting results concurrently needs its own one (see getPhonemes(Result, G2PConverter))
+	 * @return
+	 */
+	public G2PConverter createConverter() {
+		if (g2pModel == null)
+			g2pModel = FileLoader.resolve("g2p/sequitur/cmudict_sequitur.fst.ser");
         try {
-            g2pDecoder = new G2PConverter(sequiturSphinxModel);
+            return new G2PConverter(g2pModel);
         } catch (IOException e) {
             throw new RuntimeException("failed to create G2PConverter with given SphinxModel");
         }
-		
-	}	
+	}
+
+	private synchronized G2PConverter getG2PDecoder() {
+		if (g2pDecoder == null)
+			g2pDecoder = createConverter();
+		return g2pDecoder;
+	}
 	
 	/**
 	 * creates an instance of a phoneme creator. used when no precached results of a list of sentences should be loaded
@@ -215,116 +405,203 @@ public class PhonemeCreator {
 	 * @param sentenceFile
 	 */
 	public PhonemeCreator(String sentenceFile) {
+		this(sentenceFile, null);
+	}
+
+	/**
+	 * creates a new phoneme creator in word mode and caches the results for the list of sentences
+	 * @param sentenceFile
+	 * @param dictionary pronunciations of single words (see setDictionary)
+	 */
+	public PhonemeCreator(String sentenceFile, PronunciationDictionary dictionary) {
 		this();
-		InputStream fis = null;
+		this.sentenceFile = sentenceFile;
+		this.dictionary = dictionary;
 
+		//the binary data base is loaded much faster than the serialized one
+		if (loadBinary())
+			return;
 
+		//try to read the cached phonemes
+		pdb = loadSerialized();
+		if (pdb == null) {
+			System.out.println("did not find "+sentenceFile + ".ser"+" will try to create it");
+			
+			//if no cached phonemes are available cache ones
+			pdb = fillDatabase(sentenceFile, null);
+		}
+		if (pdb != null)
+			saveBinary();
+	}
 
+	/**
+	 * reads the serialized data base from sentenceFile.ser
+	 * @return the data base, or null if it is missing or was created in another mode
+	 */
+	private PhonemeDB loadSerialized() {
+		InputStream fis = null;
 		try {
-
-			//try to read the cached phonemes
 			fis = new FileInputStream(sentenceFile + ".ser");
 			ObjectInputStream o = new ObjectInputStream(fis);
-
-			pdb = new PhonemeDB();
-			pdb = (PhonemeDB) o.readObject();
-
-		} catch (IOException e) {
-			System.out.println("did not find "+sentenceFile + ".ser"+" will try to create it");
-			
-			//if no cached phonemes are available cache ones
-			fillDatabase(sentenceFile);
-			
-			//try to read the cached phonemes again
-			try {
-				fis = new FileInputStream(sentenceFile + ".ser");
-				ObjectInputStream o = new ObjectInputStream(fis);
-
-				pdb = new PhonemeDB();
-				pdb = (PhonemeDB) o.readObject();
-
-			} catch (FileNotFoundException e1) {
-				// TODO Auto-generated catch block
-				e1.printStackTrace();
-			} catch (IOException e2) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			} catch (ClassNotFoundException e3) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+			PhonemeDB loaded = (PhonemeDB) o.readObject();
+			if (!isCurrentMode(loaded.mode)) {
+				System.out.println(sentenceFile + ".ser was created in another mode");
+				return null;
 			}
-			
-
+			System.out.println("Loaded " + sentenceFile + ".ser successfully");
+			//older data bases kept sentences G2P failed on
+			Iterator<PhonemeContainer> it = loaded.arrayContent.iterator();
+			while (it.hasNext())
+				if (!hasPhonemes(it.next()))
+					it.remove();
+			return loaded;
+		} catch (IOException e) {
+			return null;
 		} catch (ClassNotFoundException e) {
 			System.err.println(e);
-			
+			return null;
 		} finally {
 			try {
 				fis.close();
-				System.out.println("Loaded " + sentenceFile
-						+ ".ser successfully");
-
 			} catch (Exception e) {
 			}
 		}
 	}
 
-	private void fillDatabase(String sentenceFile) {
+	/**
+	 * loads the phoneme data base from sentenceFile.bin
+	 * @return false if the file is missing, outdated or of another version
+	 */
+	private boolean loadBinary() {
+		File binary = new File(sentenceFile + ".bin");
+		if (!binary.exists())
+			return false;
+		try {
+			PhonemeDBFile file = new PhonemeDBFile(binary);
+			if (!isCurrentMode(file.getMode())) {
+				//phonemes of the other mode cannot be reused
+				System.out.println(sentenceFile + ".bin was created in another mode, will recreate it");
+				new File(sentenceFile + ".ser").delete();
+				return false;
+			}
+			if (file.isCurrent(new File(sentenceFile))) {
+				pdb = file.toPhonemeDB();
+				System.out.println("Loaded " + sentenceFile + ".bin successfully");
+				return true;
+			}
+			//the sentence file has changed, so only the changed sentences are converted
+			System.out.println(sentenceFile + " was changed, will update " + sentenceFile + ".bin");
+			PhonemeDB updated = updateDatabase(file.toPhonemeDB());
+			if (updated != null) {
+				pdb = updated;
+				saveBinary();
+				return true;
+			}
+		} catch (IOException e) {
+			System.out.println("could not load " + sentenceFile + ".bin: " + e.getMessage() + ", will recreate it");
+		}
+		//the serialized data base was written together with the binary one and is outdated as well
+		new File(sentenceFile + ".ser").delete();
+		return false;
+	}
 
-		Scanner in;
+	/**
+	 * stores the phoneme data base in sentenceFile.bin for faster loading
+	 */
+	private void saveBinary() {
 		try {
-			//reads sentence file
-			in = new Scanner(new FileReader(sentenceFile));
-			in.useDelimiter("\n");
+			PhonemeDBFile.write(pdb, new File(sentenceFile + ".bin"), new File(sentenceFile));
+		} catch (IOException e) {
+			System.err.println(e);
+		}
+	}
 
-			Result r = new Result();
-			String temp = "";
-			
-			//separate words and add the to the input arg
-			while (in.hasNext()) {
-				temp = in.next();
-				if(temp.indexOf("\r")!=-1)
-				{
-					temp = temp.substring(0, temp.length() - 1);
-				} else temp = temp.substring(0, temp.length());
-
-				r.addResult(temp);
-			}
-			System.out.println("getting results");
+	/**
+	 * converts the sentence file to phonemes and serializes the data base to sentenceFile.ser.
+	 * lines are read as a stream and converted in batches on a pool of workers, each with its
+	 * own G2P converter. the batches are collected in order, so the data base keeps the order of the file.
+	 * sentences that were converted before are taken from known instead of running G2P on them again
+	 * @param sentenceFile
+	 * @param known converted sentences by their words (see getResult of PhonemeContainer), or null
+	 * @return the new data base, or null if it could not be created
+	 */
+	private PhonemeDB fillDatabase(String sentenceFile, final HashMap<String, PhonemeContainer> known) {
 
-			//get the phonemes
-			ArrayList<PhonemeContainer> phonemes = getPhonemes(r);
+		PhonemeDB pdb = null;
+		final AtomicInteger converted = new AtomicInteger();
 
-			System.out.println("phoneme creation successful!");
-			
-			//set the public data base to the phonemes
-			PhonemeDB pdb = new PhonemeDB();
-			pdb.arrayContent = getPhonemes(r);
-
-			//add the phonemes to the database
-			for (PhonemeContainer res : phonemes) {
-				String x = "";
-				for (String w : res.getWords()) {
-					if (w == null)
-						break;
-					if (x.equals(""))
-						x = w;
-					else
-						x = x + " " + w;
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		//G2P converters are not shared between threads. a batch takes a free one, so at most one per worker is created
+		final BlockingQueue<G2PConverter> converters = new ArrayBlockingQueue<G2PConverter>(threads);
+
+		BufferedReader in = null;
+		try {
+			//reads sentence file
+			in = new BufferedReader(new FileReader(sentenceFile));
+			System.out.println("getting results");
+
+			pdb = new PhonemeDB();
+			pdb.mode = getMode();
+			//batches being converted, at most two per worker to bound the memory used
+			ArrayDeque<Future<ArrayList<PhonemeContainer>>> pending = new ArrayDeque<Future<ArrayList<PhonemeContainer>>>();
+			ArrayList<String> batch = new ArrayList<String>(BATCH_SIZE);
+			String line;
+			while (true) {
+				line = in.readLine();
+				if (line != null)
+					batch.add(line);
+				if (batch.size() == BATCH_SIZE || (line == null && !batch.isEmpty())) {
+					final ArrayList<String> lines = batch;
+					pending.add(workers.submit(new Callable<ArrayList<PhonemeContainer>>() {
+						@Override
+						public ArrayList<PhonemeContainer> call() {
+							G2PConverter decoder = converters.poll();
+							if (decoder == null)
+								decoder = createConverter();
+							try {
+								ArrayList<PhonemeContainer> containers = new ArrayList<PhonemeContainer>(lines.size());
+								for (String l : lines) {
+									l = clean(l);
+									if (l.equals(""))
+										continue;
+									PhonemeContainer pc = known == null ? null : known.get(l.toLowerCase().trim());
+									if (pc == null) {
+										//every sentence is converted once, caching would only evict recognition results
+										pc = createContainer(l, decoder, false);
+										converted.incrementAndGet();
+									}
+									containers.add(pc);
+								}
+								return containers;
+							} finally {
+								converters.offer(decoder);
+							}
+						}
+					}));
+					batch = new ArrayList<String>(BATCH_SIZE);
 				}
-				pdb.hashContent.put(x, res.getPhonemes());
+				while (!pending.isEmpty() && (pending.size() >= 2 * threads || line == null))
+					addToDatabase(pdb, pending.poll().get());
+				if (line == null)
+					break;
 			}
 
+			System.out.println("phoneme creation successful! converted " + converted.get()
+					+ " of " + pdb.arrayContent.size() + " sentences");
 
 			OutputStream fos = null;
+			File temp = new File(sentenceFile + ".ser.tmp");
 
-			//serialize the database
+			//serialize the database. it replaces the old one only when it is complete
 			try {
 
-				fos = new FileOutputStream(sentenceFile
-						+ ".ser");
+				fos = new FileOutputStream(temp);
 				ObjectOutputStream o = new ObjectOutputStream(fos);
 				o.writeObject(pdb);
+				o.close();
+				Files.move(temp.toPath(), new File(sentenceFile + ".ser").toPath(),
+						StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
 
 			} catch (IOException e) {
 				System.err.println(e);
@@ -335,10 +612,124 @@ public class PhonemeCreator {
 				}
 			}
 
-		} catch (FileNotFoundException e) {
-			// TODO Auto-generated catch block
+		} catch (IOException e) {
 			e.printStackTrace();
+			pdb = null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			pdb = null;
+		} catch (ExecutionException e) {
+			System.err.println("Error: " + e.getCause());
+			pdb = null;
+		} finally {
+			workers.shutdownNow();
+			try {
+				in.close();
+			} catch (Exception e) {
+			}
 		}
+		return pdb;
+	}
+
+	/**
+	 * updates an outdated data base to the current sentence file. sentences that are still
+	 * in the file keep their phonemes, only added sentences and those G2P failed on before are converted,
+	 * removed ones are dropped
+	 * @param old the outdated data base
+	 * @return the updated data base, or null if it could not be created
+	 */
+	private PhonemeDB updateDatabase(PhonemeDB old) {
+		HashMap<String, PhonemeContainer> known = new HashMap<String, PhonemeContainer>();
+		for (PhonemeContainer pc : old.arrayContent)
+			if (hasPhonemes(pc) && !known.containsKey(pc.getResult()))
+				known.put(pc.getResult(), pc);
+		return fillDatabase(sentenceFile, known);
+	}
+
+	/**
+	 * 
+	 * @param pc
+	 * @return true if G2P found phonemes for the sentence
+	 */
+	static boolean hasPhonemes(PhonemeContainer pc) {
+		byte[] ids = pc.getPhonemeIds();
+		return ids != null && ids.length > 0;
+	}
+
+	/**
+	 * adds converted sentences to the data base.
+	 * sentences G2P found no phonemes for cannot be matched and are left out
+	 * @param pdb
+	 * @param phonemes
+	 */
+	private static void addToDatabase(PhonemeDB pdb, ArrayList<PhonemeContainer> phonemes) {
+		for (PhonemeContainer res : phonemes) {
+			if (!hasPhonemes(res)) {
+				System.err.println("no phonemes for: " + res.getResult());
+				continue;
+			}
+			pdb.arrayContent.add(res);
+		}
+	}
+
+	/**
+	 * returns the n-gram index of the phoneme data base. it is loaded from sentenceFile.&lt;n&gt;gram.idx
+	 * next to the cached phonemes, or built and stored there if it is missing or outdated
+	 * @param n length of the n-grams
+	 * @return the index, or null if no phoneme data base is loaded
+	 */
+	public synchronized PhonemeNgramIndex getIndex(int n) {
+		if (pdb == null)
+			return null;
+		if (index != null && index.getN() == n)
+			return index;
+
+		//a data base without sentence file is indexed in memory only
+		if (sentenceFile == null) {
+			index = new PhonemeNgramIndex(pdb.arrayContent, n);
+			return index;
+		}
+
+		String indexFile = sentenceFile + "." + n + "gram.idx";
+		index = null;
+		InputStream fis = null;
+		try {
+			fis = new FileInputStream(indexFile);
+			ObjectInputStream o = new ObjectInputStream(fis);
+			PhonemeNgramIndex loaded = (PhonemeNgramIndex) o.readObject();
+			if (loaded.getN() == n && loaded.matches(pdb.arrayContent))
+				index = loaded;
+			else
+				System.out.println(indexFile + " is outdated, will rebuild it");
+		} catch (IOException e) {
+			System.out.println("did not find " + indexFile + " will try to create it");
+		} catch (ClassNotFoundException e) {
+			System.err.println(e);
+		} finally {
+			try {
+				fis.close();
+			} catch (Exception e) {
+			}
+		}
+
+		if (index == null) {
+			Printer.printWithTime(TAG, "building " + n + "-gram index");
+			index = new PhonemeNgramIndex(pdb.arrayContent, n);
 
+			OutputStream fos = null;
+			try {
+				fos = new FileOutputStream(indexFile);
+				ObjectOutputStream o = new ObjectOutputStream(fos);
+				o.writeObject(index);
+			} catch (IOException e) {
+				System.err.println(e);
+			} finally {
+				try {
+					fos.close();
+				} catch (Exception e) {
+				}
+			}
+		}
+		return index;
 	}
 }
@@ -22,7 +22,6 @@
 package info.knowledgeTechnology.docks.Phoneme;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
 
 
 /**
@@ -37,7 +36,8 @@ public class PhonemeDB implements Serializable{
 	 */
 	private static final long serialVersionUID = 6246046410395137574L;
 	
-	HashMap<String,String[]> hashContent = new HashMap<String,String[]>();
 	public ArrayList<PhonemeContainer> arrayContent = new ArrayList<PhonemeContainer>();
+	//how the phonemes were created (see PhonemeCreator), null if whole sentences were converted by G2P
+	String mode;
 
 }
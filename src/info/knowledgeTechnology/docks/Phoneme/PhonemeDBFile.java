@@ -0,0 +1,270 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech 
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package info.knowledgeTechnology.docks.Phoneme;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+
+/**
+ * compact binary file of a phoneme data base, mapped into memory for loading. layout (big endian):
+ * <pre>
+ * int magic, int version, long length and long modification time of the sentence file,
+ * mode the phonemes were created in (modified UTF-8, empty for whole sentences converted by G2P),
+ * int number of phoneme symbols, symbols (modified UTF-8 as written by DataOutput.writeUTF),
+ * int number of sentences n, int[n+1] phoneme offsets, int[n+1] word offsets,
+ * phoneme IDs (one byte each), sentences (UTF-8, words separated by spaces)
+ * </pre>
+ * phoneme IDs refer to the symbol table of the file and are mapped to the PhonemeAlphabet on loading
+ */
+public class PhonemeDBFile {
+
+	private static final int MAGIC = 0x50484442;
+	/**
+	 * version of the file layout, files of other versions are not loaded
+	 */
+	public static final int VERSION = 1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final MappedByteBuffer buffer;
+	private final int size;
+	//length and modification time of the sentence file it was created from
+	private final long sourceLength;
+	private final long sourceModified;
+	//how the phonemes were created, null if whole sentences were converted by G2P
+	private final String mode;
+	//position of the offset tables and data
+	private final int phonemeOffsets;
+	private final int wordOffsets;
+	private final int phonemes;
+	private final int words;
+	//IDs of the file mapped to IDs of the PhonemeAlphabet, null if they are equal
+	private final byte[] remap;
+
+	/**
+	 * maps a phoneme data base file
+	 * @param file the binary file
+	 * @param source the sentence file it was created from
+	 * @throws IOException if the file cannot be read, has another version or is older than the sentence file
+	 */
+	public PhonemeDBFile(File file, File source) throws IOException {
+		this(file);
+		if (!isCurrent(source))
+			throw new IOException(file + " is outdated");
+	}
+
+	/**
+	 * maps a phoneme data base file, even if the sentence file has changed since
+	 * @param file the binary file
+	 * @throws IOException if the file cannot be read or has another version
+	 */
+	public PhonemeDBFile(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			//the mapping stays valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			raf.close();
+		}
+
+		if (buffer.remaining() < 30 || buffer.getInt() != MAGIC)
+			throw new IOException(file + " is not a phoneme data base");
+		if (buffer.getInt() != VERSION)
+			throw new IOException(file + " has an unsupported version");
+		sourceLength = buffer.getLong();
+		sourceModified = buffer.getLong();
+		byte[] modeUtf = new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(modeUtf);
+		mode = modeUtf.length == 0 ? null : new String(modeUtf, UTF8);
+
+		int symbols = buffer.getInt();
+		byte[] ids = new byte[symbols];
+		boolean identity = true;
+		for (int i = 0; i < symbols; i++) {
+			byte[] utf = new byte[buffer.getShort() & 0xFFFF];
+			buffer.get(utf);
+			ids[i] = PhonemeAlphabet.getId(new String(utf, UTF8));
+			identity &= ids[i] == (byte) i;
+		}
+		remap = identity ? null : ids;
+
+		size = buffer.getInt();
+		phonemeOffsets = buffer.position();
+		wordOffsets = phonemeOffsets + 4 * (size + 1);
+		phonemes = wordOffsets + 4 * (size + 1);
+		words = phonemes + buffer.getInt(wordOffsets - 4);
+		if (words + buffer.getInt(phonemes - 4) != buffer.capacity())
+			throw new IOException(file + " is truncated");
+	}
+
+	/**
+	 * 
+	 * @param source the sentence file
+	 * @return true if the sentence file has not changed since this file was written
+	 */
+	public boolean isCurrent(File source) {
+		return sourceLength == source.length() && sourceModified == source.lastModified();
+	}
+
+	/**
+	 * 
+	 * @return how the phonemes were created (see PhonemeCreator), null if whole sentences were converted by G2P
+	 */
+	public String getMode() {
+		return mode;
+	}
+
+	/**
+	 * 
+	 * @return number of sentences
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 
+	 * @param i index of the sentence
+	 * @return number of phonemes of the sentence
+	 */
+	public int getPhonemeLength(int i) {
+		return buffer.getInt(phonemeOffsets + 4 * (i + 1)) - buffer.getInt(phonemeOffsets + 4 * i);
+	}
+
+	/**
+	 * 
+	 * @param i index of the sentence
+	 * @return the phonemes of the sentence as IDs of the PhonemeAlphabet
+	 */
+	public byte[] getPhonemeIds(int i) {
+		int from = buffer.getInt(phonemeOffsets + 4 * i);
+		byte[] ids = new byte[getPhonemeLength(i)];
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(phonemes + from);
+		slice.get(ids);
+		return remap(ids);
+	}
+
+	/**
+	 * 
+	 * @param i index of the sentence
+	 * @return the words of the sentence separated by spaces
+	 */
+	public String getSentence(int i) {
+		int from = buffer.getInt(wordOffsets + 4 * i);
+		byte[] utf = new byte[buffer.getInt(wordOffsets + 4 * (i + 1)) - from];
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(words + from);
+		slice.get(utf);
+		return new String(utf, UTF8);
+	}
+
+	private byte[] remap(byte[] ids) {
+		if (remap != null)
+			for (int j = 0; j < ids.length; j++)
+				ids[j] = remap[ids[j] & 0xFF];
+		return ids;
+	}
+
+	/**
+	 * creates a phoneme data base from the file. its containers refer to the mapped file,
+	 * so sentences and phonemes are only read when a container is asked for them.
+	 * sentences without phonemes, as kept by older files, are left out
+	 * @return
+	 */
+	public PhonemeDB toPhonemeDB() {
+		PhonemeDB pdb = new PhonemeDB();
+		pdb.mode = mode;
+		pdb.arrayContent.ensureCapacity(size);
+		for (int i = 0; i < size; i++)
+			if (getPhonemeLength(i) > 0)
+				pdb.arrayContent.add(new PhonemeContainer(this, i));
+		return pdb;
+	}
+
+	/**
+	 * writes a phoneme data base. the file is written to a temporary file first
+	 * and then moved to its place, so readers never see a partial file.
+	 * sentences G2P found no phonemes for are left out
+	 * @param pdb the data base
+	 * @param file the binary file
+	 * @param source the sentence file the data base was created from
+	 * @throws IOException
+	 */
+	public static void write(PhonemeDB pdb, File file, File source) throws IOException {
+		ArrayList<PhonemeContainer> containers = new ArrayList<PhonemeContainer>(pdb.arrayContent.size());
+		for (PhonemeContainer pc : pdb.arrayContent)
+			if (PhonemeCreator.hasPhonemes(pc))
+				containers.add(pc);
+		int size = containers.size();
+		int[] phonemeOffsets = new int[size + 1];
+		int[] wordOffsets = new int[size + 1];
+		byte[][] sentences = new byte[size][];
+		byte[][] ids = new byte[size][];
+		for (int i = 0; i < size; i++) {
+			PhonemeContainer pc = containers.get(i);
+			sentences[i] = pc.getResult().getBytes(UTF8);
+			ids[i] = pc.getPhonemeIds();
+			phonemeOffsets[i + 1] = phonemeOffsets[i] + ids[i].length;
+			wordOffsets[i + 1] = wordOffsets[i] + sentences[i].length;
+		}
+
+		File temp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(source.length());
+			out.writeLong(source.lastModified());
+			out.writeUTF(pdb.mode == null ? "" : pdb.mode);
+			//the symbols are written after the phonemes are encoded, so all IDs are known
+			int symbols = PhonemeAlphabet.size();
+			out.writeInt(symbols);
+			for (int i = 0; i < symbols; i++)
+				out.writeUTF(PhonemeAlphabet.getPhoneme((byte) i));
+			out.writeInt(size);
+			for (int offset : phonemeOffsets)
+				out.writeInt(offset);
+			for (int offset : wordOffsets)
+				out.writeInt(offset);
+			for (byte[] phonemes : ids)
+				out.write(phonemes);
+			for (byte[] sentence : sentences)
+				out.write(sentence);
+		} finally {
+			out.close();
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,200 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech 
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package info.knowledgeTechnology.docks.Phoneme;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * inverted index from phoneme n-grams to the sentences containing them.
+ * used to shortlist the sentences sharing most n-grams with a hypothesis,
+ * so the exact Levenshtein distance only needs to be calculated for the shortlist
+ */
+public class PhonemeNgramIndex implements Serializable {
+
+	private static final long serialVersionUID = 2816734923458165203L;
+
+	private int n;
+	private int sentenceCount;
+	private int fingerprint;
+	//sentence indices per n-gram, ascending and without duplicates
+	private HashMap<Integer, int[]> postings = new HashMap<Integer, int[]>();
+	//sentences shorter than n, they cannot be found by n-grams and are always shortlisted
+	private int[] unindexed;
+
+	private static final ThreadLocal<int[]> counts = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[0];
+		}
+	};
+
+	/**
+	 * builds the index for a list of sentences
+	 * @param sentences phoneme containers of the sentences, indexed by position
+	 * @param n length of the n-grams (1 to 4)
+	 */
+	public PhonemeNgramIndex(List<PhonemeContainer> sentences, int n) {
+		if (n < 1 || n > 4)
+			throw new IllegalArgumentException("n-gram length must be between 1 and 4: " + n);
+		this.n = n;
+		this.sentenceCount = sentences.size();
+		this.fingerprint = fingerprint(sentences);
+
+		HashMap<Integer, ArrayList<Integer>> lists = new HashMap<Integer, ArrayList<Integer>>();
+		ArrayList<Integer> shortSentences = new ArrayList<Integer>();
+		for (int j = 0; j < sentences.size(); j++) {
+			byte[] phonemes = sentences.get(j).getPhonemeIds();
+			if (phonemes.length < n) {
+				shortSentences.add(j);
+				continue;
+			}
+			for (int i = 0; i + n <= phonemes.length; i++) {
+				Integer key = key(phonemes, i);
+				ArrayList<Integer> list = lists.get(key);
+				if (list == null) {
+					list = new ArrayList<Integer>();
+					lists.put(key, list);
+				}
+				//sentences are added in order, so a duplicate can only be the last entry
+				if (list.isEmpty() || list.get(list.size() - 1) != j)
+					list.add(j);
+			}
+		}
+		for (Map.Entry<Integer, ArrayList<Integer>> e : lists.entrySet())
+			postings.put(e.getKey(), toArray(e.getValue()));
+		unindexed = toArray(shortSentences);
+	}
+
+	/**
+	 * 
+	 * @return length of the n-grams
+	 */
+	public int getN() {
+		return n;
+	}
+
+	/**
+	 * checks if the index was built for the given sentences
+	 * @param sentences
+	 * @return
+	 */
+	public boolean matches(List<PhonemeContainer> sentences) {
+		return sentences.size() == sentenceCount && fingerprint(sentences) == fingerprint;
+	}
+
+	/**
+	 * finds the sentences sharing most n-grams with the input.
+	 * on equal counts sentences with smaller index are preferred
+	 * @param input phoneme IDs of a hypothesis
+	 * @param size maximal number of indexed sentences to return. sentences shorter than n are always added
+	 * @return sentence indices in ascending order, or null if no sentence shares an n-gram with the input
+	 * and the input cannot be shortlisted
+	 */
+	public int[] shortlist(byte[] input, int size) {
+		int[] count = counts.get();
+		if (count.length < sentenceCount) {
+			count = new int[sentenceCount];
+			counts.set(count);
+		}
+
+		//count the shared n-grams, each distinct n-gram of the input once
+		int[] touched = new int[16];
+		int touchedCount = 0;
+		HashMap<Integer, Boolean> seen = new HashMap<Integer, Boolean>();
+		int maxCount = 0;
+		for (int i = 0; i + n <= input.length; i++) {
+			Integer key = key(input, i);
+			if (seen.put(key, Boolean.TRUE) != null)
+				continue;
+			int[] sentences = postings.get(key);
+			if (sentences == null)
+				continue;
+			for (int j : sentences) {
+				if (count[j]++ == 0) {
+					if (touchedCount == touched.length)
+						touched = Arrays.copyOf(touched, touched.length * 2);
+					touched[touchedCount++] = j;
+				}
+				if (count[j] > maxCount)
+					maxCount = count[j];
+			}
+		}
+
+		//the short sentences alone are no shortlist for an input sharing nothing
+		if (touchedCount == 0)
+			return null;
+
+		//find the smallest count for which all sentences still fit into the shortlist
+		int[] histogram = new int[maxCount + 1];
+		for (int k = 0; k < touchedCount; k++)
+			histogram[count[touched[k]]]++;
+		int threshold = maxCount + 1;
+		int taken = 0;
+		while (threshold > 1 && taken + histogram[threshold - 1] <= size) {
+			threshold--;
+			taken += histogram[threshold];
+		}
+		//sentences with the next smaller count fill the rest in index order
+		int fill = threshold > 1 ? size - taken : 0;
+
+		Arrays.sort(touched, 0, touchedCount);
+		int[] result = new int[taken + fill + unindexed.length];
+		int r = 0;
+		for (int k = 0; k < touchedCount; k++) {
+			int j = touched[k];
+			int c = count[j];
+			count[j] = 0;
+			if (c >= threshold || (c == threshold - 1 && fill-- > 0))
+				result[r++] = j;
+		}
+		for (int j : unindexed)
+			result[r++] = j;
+		Arrays.sort(result, 0, r);
+		return r == result.length ? result : Arrays.copyOf(result, r);
+	}
+
+	private int key(byte[] phonemes, int start) {
+		int key = 0;
+		for (int i = start; i < start + n; i++)
+			key = (key << 8) | (phonemes[i] & 0xFF);
+		return key;
+	}
+
+	private static int[] toArray(ArrayList<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = list.get(i);
+		return array;
+	}
+
+	private static int fingerprint(List<PhonemeContainer> sentences) {
+		int hash = 1;
+		for (PhonemeContainer pc : sentences)
+			hash = 31 * hash + Arrays.hashCode(pc.getPhonemeIds());
+		return hash;
+	}
+}
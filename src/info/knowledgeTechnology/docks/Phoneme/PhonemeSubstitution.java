@@ -21,21 +21,30 @@
  */
 package info.knowledgeTechnology.docks.Phoneme;
 
-import info.knowledgeTechnology.docks.Data.Result;
 import info.knowledgeTechnology.docks.Phoneme.Categories.Excitation;
 import info.knowledgeTechnology.docks.Phoneme.Categories.MannerOfArticulation;
 import info.knowledgeTechnology.docks.Phoneme.Categories.PlaceOfArticfulation;
 import info.knowledgeTechnology.docks.Phoneme.Categories.VowelBackness;
 import info.knowledgeTechnology.docks.Phoneme.Categories.VowelHeight;
-import info.knowledgeTechnology.docks.Utils.FileLoop;
-import info.knowledgeTechnology.docks.Utils.FileProcessor;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.DecimalFormat;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import edu.cmu.sphinx.util.NISTAlign;
+import edu.cmu.sphinx.util.LogMath;
 /**
  * containes the 0.1/0.9, Derived IPA and Google Revers Heuristic
  * used to calculate substitution scores
@@ -44,7 +53,7 @@ import edu.cmu.sphinx.util.NISTAlign;
  */
 public class PhonemeSubstitution {
 
-	private String[] signs = new String[] { "SIL", "AA", "AE", "AH", "AO", "AW", "AY",
+	static final String[] signs = new String[] { "SIL", "AA", "AE", "AH", "AO", "AW", "AY",
 			"B", "CH", "D", "DH", "EH", "ER", "EY", "F", "G", "HH", "IH", "IY",
 			"JH", "K", "L", "M", "N", "NG", "OW", "OY", "P", "R", "S", "SH",
 			"T", "TH", "UH", "UW", "V", "W", "Y", "Z", "ZH" };
@@ -58,45 +67,232 @@ public class PhonemeSubstitution {
 		if (method == IPA_TABLE) {
 			init();
 			initMapsIPA();
-		} else if (method == GOOGLE_REVERSE)
-			initMapsGoogleReverse();
-		else if (method == STANDARD)
+		} else if (method == STANDARD)
 			initMapsStandard();
+		initLogScores();
 
+	}
+
+	/**
+	 * creates a substitutor from a table of scores
+	 * @param scores scores between 0 and 1 by "phoneme1;phoneme2"
+	 */
+	private PhonemeSubstitution(HashMap<String, Double> scores) {
+		fastScoreMapNormalized = scores;
+		initLogScores();
+	}
 
+	//result file the Google Reverse heuristic is learned from, and the learned table
+	private static final String GOOGLE_REFHYP = "heinrichLab.google.refhyp";
+	private static final String GOOGLE_SCORES = GOOGLE_REFHYP + ".scores";
+
+	//substitutors by method, each is created once even if several threads ask for it
+	private static final ConcurrentHashMap<Integer, FutureTask<PhonemeSubstitution>> instances = new ConcurrentHashMap<Integer, FutureTask<PhonemeSubstitution>>();
+	private static final ConcurrentHashMap<String, Integer> names = new ConcurrentHashMap<String, Integer>();
+	//methods below are the built-in tables
+	private static final int BUILT_IN = 3;
+	private static final AtomicInteger nextMethod = new AtomicInteger(BUILT_IN);
+
+	static {
+		names.put("standard", 0);
+		names.put("ipa", 1);
+		names.put("google_reverse", 2);
 	}
 
 	/**
-	 * returns an instance of a substitutor based on the heuristic chosen
-	 * @param method 
+	 * creates the substitutor of one of the built in heuristics
+	 * @param method
 	 * @return
 	 */
-	public static PhonemeSubstitution getInstance(int method) {
-		switch (method) {
-		case 0:
-			if (stStandard == null)
-				stStandard = new PhonemeSubstitution(method);
-			return stStandard;
-
-		case 1:
-			if (stIPA == null)
-				stIPA = new PhonemeSubstitution(method);
-			return stIPA;
-
-		case 2:
-			if (stGoogleReverse == null)
-				stGoogleReverse = new PhonemeSubstitution(method);
-			return stGoogleReverse;
-
-		default:
-			return null;
+	private static PhonemeSubstitution create(int method) {
+		if (method != GOOGLE_REVERSE)
+			return new PhonemeSubstitution(method);
+
+		//replaying the result file takes long, so the learned table is stored next to it
+		File scores = new File(GOOGLE_SCORES);
+		if (scores.exists() && scores.lastModified() >= new File(GOOGLE_REFHYP).lastModified()) {
+			try {
+				return load(GOOGLE_SCORES);
+			} catch (IOException e) {
+				System.err.println("could not load " + GOOGLE_SCORES + ": " + e.getMessage());
+			}
 		}
+		PhonemeSubstitution substitution;
+		try {
+			//process a cached result file of half of the scripted data set containing reference and hypothesis
+			substitution = new ConfusionTrainer(PhonemeCreator.getInstance()).train(GOOGLE_REFHYP);
+		} catch (IOException e) {
+			throw new IllegalStateException("could not learn scores from " + GOOGLE_REFHYP, e);
+		}
+		try {
+			substitution.save(GOOGLE_SCORES);
+		} catch (IOException e) {
+			System.err.println(e);
+		}
+		return substitution;
+	}
 
+	/**
+	 * returns an instance of a substitutor based on the heuristic chosen.
+	 * can be called from several threads, each substitutor is only created once
+	 * @param method STANDARD, IPA_TABLE, GOOGLE_REVERSE or a method returned by register
+	 * @return the substitutor, or null if there is none for the method
+	 */
+	public static PhonemeSubstitution getInstance(final int method) {
+		FutureTask<PhonemeSubstitution> task = instances.get(method);
+		if (task == null) {
+			if (method < 0 || method > 2)
+				return null;
+			FutureTask<PhonemeSubstitution> created = new FutureTask<PhonemeSubstitution>(
+					new Callable<PhonemeSubstitution>() {
+						@Override
+						public PhonemeSubstitution call() {
+							return create(method);
+						}
+					});
+			task = instances.putIfAbsent(method, created);
+			if (task == null) {
+				task = created;
+				task.run();
+			}
+		}
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while creating phoneme substitution " + method);
+		} catch (ExecutionException e) {
+			//a later call tries again
+			instances.remove(method, task);
+			throw new IllegalStateException("could not create phoneme substitution " + method, e.getCause());
+		}
 	}
 
-	private static PhonemeSubstitution stStandard = null;
-	private static PhonemeSubstitution stIPA = null;
-	private static PhonemeSubstitution stGoogleReverse = null;
+	/**
+	 * returns a substitutor by name
+	 * @param name "standard", "ipa", "google_reverse" or a name given to register
+	 * @return the substitutor, or null if there is none for the name
+	 */
+	public static PhonemeSubstitution getInstance(String name) {
+		Integer method = names.get(name);
+		return method == null ? null : getInstance(method);
+	}
+
+	/**
+	 * starts creating substitutors in the background, e.g. at startup, so the first
+	 * recognition does not wait for them. each method is created on its own thread
+	 * @param methods the methods to create, all built in ones if none are given
+	 */
+	public static void preload(int... methods) {
+		if (methods.length == 0)
+			methods = new int[] { STANDARD, IPA_TABLE, GOOGLE_REVERSE };
+		for (final int method : methods) {
+			Thread thread = new Thread("PhonemeSubstitution-" + method) {
+				@Override
+				public void run() {
+					try {
+						getInstance(method);
+					} catch (IllegalStateException e) {
+						System.err.println(e.getMessage());
+					}
+				}
+			};
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * registers a custom substitutor, e.g. one learned from own data and loaded with load.
+	 * registering a name again replaces the substitutor of that name
+	 * @param name any name but "standard", "ipa" and "google_reverse"
+	 * @param substitution
+	 * @return the method to use for the substitutor, e.g. with PhoneFrontEnd.setSubstitutionMethod
+	 * @throws IllegalArgumentException if name is one of the built-in tables
+	 */
+	public static int register(String name, PhonemeSubstitution substitution) {
+		Integer method = names.get(name);
+		if (method != null && method < BUILT_IN)
+			throw new IllegalArgumentException(name + " is a built-in phoneme substitution");
+		if (method == null) {
+			Integer created = nextMethod.getAndIncrement();
+			method = names.putIfAbsent(name, created);
+			if (method == null)
+				method = created;
+		}
+		FutureTask<PhonemeSubstitution> task = new FutureTask<PhonemeSubstitution>(new Runnable() {
+			@Override
+			public void run() {
+			}
+		}, substitution);
+		task.run();
+		instances.put(method, task);
+		return method;
+	}
+
+	/**
+	 * loads a table of scores written by save
+	 * @param filename
+	 * @return the substitutor
+	 * @throws IOException if the file cannot be read or has an unexpected format
+	 */
+	public static PhonemeSubstitution load(String filename) throws IOException {
+		BufferedReader in = new BufferedReader(new FileReader(filename));
+		try {
+			String header = in.readLine();
+			if (header == null)
+				throw new IOException(filename + " is empty");
+			String[] columns = header.trim().split("\\s+");
+			HashMap<String, Double> scores = new HashMap<String, Double>();
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] row = line.trim().split("\\s+");
+				if (row.length == 1 && row[0].isEmpty())
+					continue;
+				if (row.length != columns.length + 1)
+					throw new IOException(filename + ": row " + row[0] + " has " + (row.length - 1) + " scores");
+				for (int i = 0; i < columns.length; i++)
+					scores.put(row[0] + ";" + columns[i], Double.parseDouble(row[i + 1]));
+			}
+			for (String s1 : signs)
+				for (String s2 : signs)
+					if (!scores.containsKey(s1 + ";" + s2))
+						throw new IOException(filename + " has no score for " + s1 + ";" + s2);
+			return new PhonemeSubstitution(scores);
+		} catch (NumberFormatException e) {
+			throw new IOException(filename + ": " + e.getMessage());
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * writes the table of scores as text: a header with the phonemes, then one row per
+	 * reference phoneme starting with the phoneme
+	 * @param filename
+	 * @throws IOException
+	 */
+	public void save(String filename) throws IOException {
+		File file = new File(filename);
+		File temp = new File(filename + ".tmp");
+		PrintWriter out = new PrintWriter(new FileWriter(temp));
+		try {
+			StringBuilder line = new StringBuilder();
+			for (String s : signs)
+				line.append(s).append(' ');
+			out.println(line.toString().trim());
+			for (String s1 : signs) {
+				line = new StringBuilder(s1);
+				for (String s2 : signs)
+					line.append(' ').append(getScore(s1, s2));
+				out.println(line);
+			}
+		} finally {
+			out.close();
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
 
 	/**
 	 * prints out the substitution table
@@ -196,6 +392,30 @@ public class PhonemeSubstitution {
 	private Hashtable<String, Phoneme> phonemes = new Hashtable<String, Phoneme>();
 	private HashMap<String, Integer> fastScoreMap = new HashMap<String, Integer>();
 	private HashMap<String, Double> fastScoreMapNormalized = new HashMap<String, Double>();
+	//scores in log domain indexed by the IDs of the PhonemeAlphabet
+	private float[][] logScores;
+	private float logMinScore;
+	//rows of scores in log domain against all IDs of the PhonemeAlphabet, the last one for phonemes outside the table
+	private float[][] logScoreRows;
+
+	/**
+	 * converts the score map to a table in log domain
+	 */
+	private void initLogScores() {
+		LogMath logMath = LogMath.getInstance();
+		logMinScore = logMath.linearToLog(0.1);
+		logScores = new float[signs.length][signs.length];
+		for (int i = 0; i < signs.length; i++) {
+			for (int j = 0; j < signs.length; j++) {
+				Double score = fastScoreMapNormalized.get(signs[i] + ";" + signs[j]);
+				logScores[i][j] = score == null ? logMinScore : logMath.linearToLog(score);
+			}
+		}
+		logScoreRows = new float[signs.length + 1][PhonemeAlphabet.MAX_SIZE];
+		for (int i = 0; i <= signs.length; i++)
+			for (int j = 0; j < PhonemeAlphabet.MAX_SIZE; j++)
+				logScoreRows[i][j] = getLogScore(i, j);
+	}
 
 	/**
 	 * initializes the score map for 0.1/0.9
@@ -262,120 +482,24 @@ public class PhonemeSubstitution {
 	}
 
 	/**
-	 * initializes the score map for Derived IPA
+	 * creates a substitutor from counts of aligned phonemes (Google Reverse heuristic).
+	 * a substitution scores 0.1 if it was never seen and up to 0.9 as often as the phoneme was recognized correctly
+	 * @param counts counts indexed by reference and hypothesis phoneme in the order of the PhonemeAlphabet
+	 * @return
 	 */
-	
-	private void initMapsGoogleReverse() {
-		//process a cached result file of half of the scripted data set containing reference and hypothesis
-		new FileProcessor(
-				"heinrichLab.google.refhyp",
-				new FileLoop() {
-					
-					PhonemeCreator pc = PhonemeCreator.getInstance();
-
-					final NISTAlign alignerPhonemesReverse = new NISTAlign(
-							true, true);
-					ArrayList<PhonemeContainer> phonemesSpeech = null;
-					Result r;
-					HashMap<String, Integer> hm = new HashMap<String, Integer>();
-
-					@Override
-					public void process(String line) {
-						r = new Result();
-
-						String[] strLineSplit = line.split(";");
-						String ref = strLineSplit[1];
-						String hyp = strLineSplit[0];
-
-						//get the phonemes for reference and hypothesis
-						r.addResult(ref);
-						r.addResult(hyp);
-						phonemesSpeech = pc.getPhonemes(r);
-
-						String refPhonemes = "";
-						for (String s : phonemesSpeech.get(0).getPhonemes())
-							refPhonemes = refPhonemes + s + " ";
-
-						String hypPhonemes = "";
-						for (String s : phonemesSpeech.get(1).getPhonemes())
-							hypPhonemes = hypPhonemes + s + " ";
-
-
-						//align ref and hyp
-						alignerPhonemesReverse.align(refPhonemes, hypPhonemes);
-
-
-
-						String alignedRef = alignerPhonemesReverse
-								.getAlignedReference();
-						String alignedHyp = alignerPhonemesReverse
-								.getAlignedHypothesis();
-
-
-						alignedRef = alignedRef.replaceAll(" +", " ");
-						alignedHyp = alignedHyp.replaceAll(" +", " ");
-						String[] refWords = alignedRef.split(" ");
-						String[] hypWords = alignedHyp.split(" ");
-
-						//calculate the number of substitutions for each phoneme by each other phoneme
-						for (int i = 0; i < refWords.length; i++) {
-							String key = refWords[i].toUpperCase() + ";"
-									+ hypWords[i].toUpperCase();
-							if (!hm.containsKey(key))
-								hm.put(key, 1);
-							else
-								hm.put(key, hm.get(key) + 1);
-						}
-					}
-
-					@Override
-					public void start() {
-						// TODO Auto-generated method stub
-
-					}
-
-					@Override
-					public void end() {
-
-
-
-						// TODO Auto-generated method stub
-						System.out.print("     ");
-						for (String s : signs) {
-							s = String.format("%4s", s);
-							System.out.print(s + " ");
-						}
-						System.out.println();
-						DecimalFormat f = new DecimalFormat("#0.00");
-
-						//normalize the distance table to a score table
-						for (String s1 : signs) {
-							String s = s1;
-							s = String.format("%4s", s);
-							System.out.print(s + " ");
-							for (String s2 : signs) {
-								double normalizedScore = 0.1;
-
-								if (hm.containsKey(s1 + ";" + s2))
-									normalizedScore = normalizeLinear(0,
-											hm.get(s1 + ";" + s1),
-											hm.get(s1 + ";" + s2), 0.1, 0.9);
-								fastScoreMapNormalized.put(s1 + ";" + s2,
-										normalizedScore);
-								String result = normalizedScore + "";
-								result = String.format("%4s", result);
-																		
-								System.out.print(f.format(normalizedScore)
-										+ " ");
-							}
-							System.out.println();
-						}
-						
-						fastScoreMapNormalized.put("SIL;SIL", 0.9);
-
-					}
-
-				});
+	static PhonemeSubstitution fromCounts(long[][] counts) {
+		HashMap<String, Double> scores = new HashMap<String, Double>();
+		for (int i = 0; i < signs.length; i++) {
+			for (int j = 0; j < signs.length; j++) {
+				double normalizedScore = 0.1;
+				if (counts[i][j] > 0)
+					normalizedScore = counts[i][i] == 0 ? 0.9
+							: normalizeLinear(0, counts[i][i], counts[i][j], 0.1, 0.9);
+				scores.put(signs[i] + ";" + signs[j], normalizedScore);
+			}
+		}
+		scores.put("SIL;SIL", 0.9);
+		return new PhonemeSubstitution(scores);
 	}
 /**
  * calculates positive distance
@@ -401,6 +525,61 @@ public class PhonemeSubstitution {
 		return fastScoreMapNormalized.get(phoneme1 + ";" + phoneme2);
 	}
 
+	/**
+	 * get the score comparing to phonemes in log domain
+	 * @param phoneme1 reference as ID of the PhonemeAlphabet
+	 * @param phoneme2 input as ID of the PhonemeAlphabet
+	 * @return the score, or the lowest score for phonemes outside the table
+	 */
+	public float getLogScore(int phoneme1, int phoneme2) {
+		if (phoneme1 >= signs.length || phoneme2 >= signs.length)
+			return logMinScore;
+		return logScores[phoneme1][phoneme2];
+	}
+
+	/**
+	 * returns the scores of a phoneme against all phonemes in log domain
+	 * @param phoneme1 reference as ID of the PhonemeAlphabet
+	 * @return scores indexed by the IDs of the PhonemeAlphabet (PhonemeAlphabet.MAX_SIZE entries). must not be changed
+	 */
+	public float[] getLogScoreRow(int phoneme1) {
+		return logScoreRows[Math.min(phoneme1, signs.length)];
+	}
+
+	/**
+	 * 
+	 * @return the scores in log domain indexed by the IDs of the PhonemeAlphabet. must not be changed
+	 */
+	public float[][] getLogScores() {
+		return logScores;
+	}
+
+	/**
+	 * 
+	 * @return the score of phonemes outside the table in log domain
+	 */
+	public float getLogMinScore() {
+		return logMinScore;
+	}
+
+	/**
+	 * converts the scores to substitution costs for a weighted Levenshtein distance.
+	 * the best score (0.9) costs 0, the worst (0.1) costs 1, equal phonemes always cost 0
+	 * @return costs indexed by the IDs of the PhonemeAlphabet
+	 */
+	public float[][] getSubstitutionCosts() {
+		float[][] costs = new float[signs.length][signs.length];
+		for (int i = 0; i < signs.length; i++) {
+			for (int j = 0; j < signs.length; j++) {
+				if (i == j)
+					continue;
+				double cost = (0.9 - getScore(signs[i], signs[j])) / 0.8;
+				costs[i][j] = (float) Math.min(1.0, Math.max(0.0, cost));
+			}
+		}
+		return costs;
+	}
+
 	/**
 	 * calculates the distance between to phonemes based on IPA categories
 	 * @param phoneme1 reference
@@ -0,0 +1,156 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech 
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package info.knowledgeTechnology.docks.Phoneme;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * bounded cache of pronunciations shared between threads. the keys are spread over segments
+ * with their own lock, so concurrent lookups rarely wait for each other. when a segment is full,
+ * its least recently used entry is evicted
+ */
+public class PronunciationCache {
+
+	private static final int MAX_SEGMENTS = 16;
+	//smaller caches get fewer segments, so small capacities are not split into tiny ones
+	private static final int MIN_SEGMENT_CAPACITY = 64;
+
+	private final int capacity;
+	private final LinkedHashMap<String, String[]>[] segments;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * 
+	 * @param capacity maximum number of cached pronunciations, 0 disables the cache
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public PronunciationCache(int capacity) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("capacity must not be negative");
+		this.capacity = capacity;
+		int count = 1;
+		while (count < MAX_SEGMENTS && count * 2 * MIN_SEGMENT_CAPACITY <= capacity)
+			count *= 2;
+		segments = new LinkedHashMap[count];
+		for (int i = 0; i < count; i++) {
+			//the segment capacities add up to the capacity
+			final int segmentCapacity = capacity / count + (i < capacity % count ? 1 : 0);
+			//access order makes the eldest entry the least recently used one
+			segments[i] = new LinkedHashMap<String, String[]>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+					return size() > segmentCapacity;
+				}
+			};
+		}
+	}
+
+	private LinkedHashMap<String, String[]> segment(String key) {
+		int hash = key.hashCode();
+		hash ^= hash >>> 16;
+		return segments[hash & (segments.length - 1)];
+	}
+
+	/**
+	 * 
+	 * @param key graphemes of a word or sentence
+	 * @return the cached phonemes, or null if there are none
+	 */
+	public String[] get(String key) {
+		LinkedHashMap<String, String[]> segment = segment(key);
+		String[] phonemes;
+		synchronized (segment) {
+			phonemes = segment.get(key);
+		}
+		if (phonemes == null)
+			misses.incrementAndGet();
+		else
+			hits.incrementAndGet();
+		return phonemes;
+	}
+
+	/**
+	 * 
+	 * @param key graphemes of a word or sentence
+	 * @param phonemes the phonemes, must not be changed afterwards
+	 */
+	public void put(String key, String[] phonemes) {
+		if (capacity == 0 || phonemes == null)
+			return;
+		LinkedHashMap<String, String[]> segment = segment(key);
+		synchronized (segment) {
+			segment.put(key, phonemes);
+		}
+	}
+
+	/**
+	 * removes all entries and resets the counters
+	 */
+	public void clear() {
+		for (LinkedHashMap<String, String[]> segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+		hits.set(0);
+		misses.set(0);
+	}
+
+	/**
+	 * 
+	 * @return number of cached pronunciations
+	 */
+	public int size() {
+		int size = 0;
+		for (LinkedHashMap<String, String[]> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * 
+	 * @return number of lookups that found a pronunciation
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * 
+	 * @return number of lookups that did not find a pronunciation
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+}
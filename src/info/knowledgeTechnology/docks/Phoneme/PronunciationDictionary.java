@@ -0,0 +1,148 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech 
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package info.knowledgeTechnology.docks.Phoneme;
+
+import info.knowledgeTechnology.docks.Utils.Hashing;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * pronunciations of single words as read from a Sphinx dictionary (.dic), e.g. the CMU dictionary.
+ * only the first pronunciation of a word is kept, words are stored in lower case
+ */
+public class PronunciationDictionary {
+
+	private HashMap<String, String[]> pronunciations = new HashMap<String, String[]>();
+	//computed on first use, reset when a word is added
+	private String fingerprint;
+
+	/**
+	 * creates an empty dictionary
+	 */
+	public PronunciationDictionary() {
+	}
+
+	/**
+	 * reads a dictionary with one word per line followed by its phonemes,
+	 * like "robot R OW B AA T". alternatives like "robot(2)" and comments starting with ;;; are skipped
+	 * @param dictionaryFile path to the dictionary
+	 * @throws IOException
+	 */
+	public PronunciationDictionary(String dictionaryFile) throws IOException {
+		BufferedReader br = new BufferedReader(new InputStreamReader(
+				new FileInputStream(dictionaryFile), "UTF-8"));
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith(";;;"))
+					continue;
+				String[] parts = line.split("\\s+");
+				if (parts.length < 2 || parts[0].endsWith(")"))
+					continue;
+				String[] phonemes = new String[parts.length - 1];
+				for (int i = 1; i < parts.length; i++)
+					//the CMU dictionary marks the stress of vowels with digits
+					phonemes[i - 1] = parts[i].replaceAll("[0-9]+$", "");
+				String word = parts[0].toLowerCase();
+				if (!pronunciations.containsKey(word))
+					pronunciations.put(word, phonemes);
+			}
+		} finally {
+			br.close();
+		}
+	}
+
+	/**
+	 * reads the dictionary generated for a config (config/&lt;name&gt;/model/&lt;modelType&gt;.dic).
+	 * it holds the G2P pronunciations of the config's vocabulary, a CMU dictionary can be read by path
+	 * @param configname
+	 * @param modelType model type the config was created with, e.g. "docks_ngram" or "docks_grammar"
+	 * @return
+	 * @throws IOException
+	 */
+	public static PronunciationDictionary forConfig(String configname, String modelType) throws IOException {
+		return new PronunciationDictionary("config/"+configname+"/model/"+modelType+".dic");
+	}
+
+	/**
+	 * adds or replaces the pronunciation of a word
+	 * @param word
+	 * @param phonemes
+	 */
+	public void add(String word, String[] phonemes) {
+		pronunciations.put(word.toLowerCase(), phonemes);
+		fingerprint = null;
+	}
+
+	/**
+	 * 
+	 * @param word in lower case
+	 * @return the phonemes of the word, or null if it is not in the dictionary
+	 */
+	public String[] get(String word) {
+		return pronunciations.get(word);
+	}
+
+	/**
+	 * 
+	 * @return number of words in the dictionary
+	 */
+	public int size() {
+		return pronunciations.size();
+	}
+
+	/**
+	 * 
+	 * @return SHA-256 hash of all words and their pronunciations, equal for dictionaries with the same content
+	 */
+	public String getFingerprint() {
+		String result = fingerprint;
+		if (result == null) {
+			result = computeFingerprint();
+			fingerprint = result;
+		}
+		return result;
+	}
+
+	private String computeFingerprint() {
+		MessageDigest digest = Hashing.sha256();
+		ArrayList<String> words = new ArrayList<String>(pronunciations.keySet());
+		Collections.sort(words);
+		for (String word : words) {
+			StringBuilder entry = new StringBuilder(word);
+			for (String phoneme : pronunciations.get(word))
+				entry.append(' ').append(phoneme);
+			entry.append('\n');
+			digest.update(entry.toString().getBytes(StandardCharsets.UTF_8));
+		}
+		return Hashing.toHex(digest);
+	}
+}
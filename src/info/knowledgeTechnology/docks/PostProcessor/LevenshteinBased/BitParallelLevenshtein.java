@@ -0,0 +1,225 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech 
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased;
+
+import info.knowledgeTechnology.docks.Phoneme.PhonemeAlphabet;
+
+/**
+ * Levenshtein distance using the bit-vector algorithm of Myers (1999) in the
+ * formulation of Hyyrö (2003).
+ * the shorter sequence is encoded as bit vectors, one bit per phoneme, and every
+ * phoneme of the longer sequence updates a whole column of the distance matrix
+ * with a few word operations. sequences of up to 64 phonemes fit into one long,
+ * longer ones are split into blocks of 64 phonemes.
+ */
+public class BitParallelLevenshtein implements EditDistance {
+
+	private static final int WORD_SIZE = 64;
+	private static final long HIGH_BIT = 1L << (WORD_SIZE - 1);
+
+	/**
+	 * scratch buffers of one thread
+	 */
+	private static class Scratch {
+		//match bit vectors per symbol and block, all zero between two calls
+		long[] peq = new long[PhonemeAlphabet.MAX_SIZE];
+		//vertical positive and negative deltas per block
+		long[] pv = new long[1];
+		long[] mv = new long[1];
+	}
+
+	private static final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+
+	/**
+	 * calculates Levenshtein distance between two arrays of phoneme IDs
+	 * @param reference
+	 * @param input
+	 * @return
+	 */
+	@Override
+	public int diff(byte[] reference, byte[] input) {
+		return diff(reference, input, Integer.MAX_VALUE - 1);
+	}
+
+	/**
+	 * calculates Levenshtein distance between two arrays of phoneme IDs, but gives up
+	 * as soon as the distance is known to be larger than maxDistance
+	 * @param reference
+	 * @param input
+	 * @param maxDistance the largest distance of interest
+	 * @return the distance, or maxDistance+1 if it is larger than maxDistance
+	 */
+	@Override
+	public int diff(byte[] reference, byte[] input, int maxDistance) {
+		//the distance is symmetric, encode the shorter sequence as pattern
+		byte[] pattern = reference;
+		byte[] text = input;
+		if (pattern.length > text.length) {
+			pattern = input;
+			text = reference;
+		}
+		//the length difference alone needs that many insertions or deletions
+		if (text.length - pattern.length > maxDistance)
+			return maxDistance + 1;
+		if (pattern.length == 0)
+			return text.length;
+
+		if (pattern.length <= WORD_SIZE)
+			return diffSingleWord(pattern, text, maxDistance);
+		return diffMultiWord(pattern, text, maxDistance);
+	}
+
+	/**
+	 * distance for patterns of up to 64 phonemes
+	 */
+	private int diffSingleWord(byte[] pattern, byte[] text, int maxDistance) {
+		long[] peq = scratch.get().peq;
+		int m = pattern.length;
+		int n = text.length;
+
+		//set a bit for every position of a symbol in the pattern
+		for (int i = 0; i < m; i++)
+			peq[pattern[i] & 0xFF] |= 1L << i;
+
+		//D[i][0] = i, so all vertical deltas are +1
+		long pv = -1L;
+		long mv = 0L;
+		long lastRow = 1L << (m - 1);
+		int score = m;
+
+		for (int j = 0; j < n; j++) {
+			long eq = peq[text[j] & 0xFF];
+			long xv = eq | mv;
+			long xh = (((eq & pv) + pv) ^ pv) | eq;
+			long ph = mv | ~(xh | pv);
+			long mh = pv & xh;
+
+			if ((ph & lastRow) != 0)
+				score++;
+			else if ((mh & lastRow) != 0)
+				score--;
+
+			//D[0][j] = j, so a +1 horizontal delta enters from the top
+			ph = (ph << 1) | 1L;
+			mh <<= 1;
+			pv = mh | ~(xv | ph);
+			mv = ph & xv;
+
+			//every remaining column can lower the distance by one at most
+			if (score - (n - j - 1) > maxDistance) {
+				score = maxDistance + 1;
+				break;
+			}
+		}
+
+		//leave the match vectors cleared for the next call
+		for (int i = 0; i < m; i++)
+			peq[pattern[i] & 0xFF] = 0L;
+
+		return Math.min(score, maxDistance + 1);
+	}
+
+	/**
+	 * distance for patterns longer than 64 phonemes, processed in blocks of 64 rows
+	 */
+	private int diffMultiWord(byte[] pattern, byte[] text, int maxDistance) {
+		int m = pattern.length;
+		int n = text.length;
+		int blocks = (m + WORD_SIZE - 1) / WORD_SIZE;
+
+		Scratch s = scratch.get();
+		if (s.peq.length < PhonemeAlphabet.MAX_SIZE * blocks)
+			s.peq = new long[PhonemeAlphabet.MAX_SIZE * blocks];
+		if (s.pv.length < blocks) {
+			s.pv = new long[blocks];
+			s.mv = new long[blocks];
+		}
+		long[] peq = s.peq;
+		long[] pv = s.pv;
+		long[] mv = s.mv;
+
+		//the match vectors of a symbol are stored next to each other
+		for (int i = 0; i < m; i++)
+			peq[(pattern[i] & 0xFF) * blocks + i / WORD_SIZE] |= 1L << (i % WORD_SIZE);
+		for (int b = 0; b < blocks; b++) {
+			pv[b] = -1L;
+			mv[b] = 0L;
+		}
+
+		long lastRow = 1L << ((m - 1) % WORD_SIZE);
+		int score = m;
+
+		for (int j = 0; j < n; j++) {
+			int offset = (text[j] & 0xFF) * blocks;
+			//D[0][j] = j, so a +1 horizontal delta enters the first block
+			int hin = 1;
+			for (int b = 0; b < blocks; b++) {
+				long eq = peq[offset + b];
+				long p = pv[b];
+				long mvb = mv[b];
+				long hinIsNeg = hin < 0 ? 1L : 0L;
+
+				long xv = eq | mvb;
+				eq |= hinIsNeg;
+				long xh = (((eq & p) + p) ^ p) | eq;
+				long ph = mvb | ~(xh | p);
+				long mh = p & xh;
+
+				//horizontal delta leaving the block, at the last real row for the last block
+				long out = (b == blocks - 1) ? lastRow : HIGH_BIT;
+				int hout = 0;
+				if ((ph & out) != 0)
+					hout = 1;
+				else if ((mh & out) != 0)
+					hout = -1;
+
+				ph <<= 1;
+				mh <<= 1;
+				if (hin < 0)
+					mh |= 1L;
+				else if (hin > 0)
+					ph |= 1L;
+				pv[b] = mh | ~(xv | ph);
+				mv[b] = ph & xv;
+				hin = hout;
+			}
+			score += hin;
+
+			//every remaining column can lower the distance by one at most
+			if (score - (n - j - 1) > maxDistance) {
+				score = maxDistance + 1;
+				break;
+			}
+		}
+
+		//leave the match vectors cleared for the next call
+		for (int i = 0; i < m; i++)
+			peq[(pattern[i] & 0xFF) * blocks + i / WORD_SIZE] = 0L;
+
+		return Math.min(score, maxDistance + 1);
+	}
+}
@@ -0,0 +1,48 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech 
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased;
+
+/**
+ * distance measure between two phoneme sequences given as IDs of the PhonemeAlphabet.
+ * used by the SentencelistPostProcessor to choose how sentences are matched
+ * @see info.knowledgeTechnology.docks.Phoneme.PhonemeAlphabet
+ */
+public interface EditDistance {
+
+	/**
+	 * calculates the distance between two phoneme sequences
+	 * @param reference
+	 * @param input
+	 * @return
+	 */
+	public int diff(byte[] reference, byte[] input);
+
+	/**
+	 * calculates the distance between two phoneme sequences, but may give up
+	 * as soon as it is known to be larger than maxDistance
+	 * @param reference
+	 * @param input
+	 * @param maxDistance the largest distance of interest
+	 * @return the distance, or maxDistance+1 if it is larger than maxDistance
+	 */
+	public int diff(byte[] reference, byte[] input, int maxDistance);
+}
@@ -24,8 +24,34 @@ package info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased;
  * origin: http://www.java-blog-buch.de/c-levenshtein-distanz/
  * modified by Johannes Twiefel
  *
+ * only the last two rows of the distance matrix are kept. they are stored in
+ * per-thread scratch buffers, so no memory is allocated after the buffers have
+ * grown to the longest input.
  */
-public class Levenshtein {
+public class Levenshtein implements EditDistance {
+
+  //two rows of the distance matrix per thread, grown on demand
+  private static final ThreadLocal<int[][]> scratch = new ThreadLocal<int[][]>() {
+    @Override
+    protected int[][] initialValue() {
+      return new int[][] { new int[64], new int[64] };
+    }
+  };
+
+  /**
+   * returns the scratch rows of the current thread with at least the given length
+   * @param length
+   * @return
+   */
+  private static int[][] getRows(int length) {
+    int[][] rows = scratch.get();
+    if (rows[0].length < length) {
+      int size = Math.max(length, rows[0].length * 2);
+      rows[0] = new int[size];
+      rows[1] = new int[size];
+    }
+    return rows;
+  }
 
  /**
   * calculates Levenshtein distance between two arrays of symbols
@@ -34,42 +60,175 @@ public class Levenshtein {
   * @return
   */
   public int diff(String[] reference, String[] input) {
- 
-	//create a matrix for the distances
-    int matrix[][] = new int[reference.length + 1][input.length + 1];
-    
-    //initilize the outer left and top borders with increasing values
-    for (int i = 0; i < reference.length + 1; i++) {
-      matrix[i][0] = i;
-    }
+
+    int[][] rows = getRows(input.length + 1);
+    //previous row of the matrix
+    int[] last = rows[0];
+    //row of the matrix to fill
+    int[] current = rows[1];
+
+    //initilize the top border with increasing values
     for (int i = 0; i < input.length + 1; i++) {
-      matrix[0][i] = i;
+      last[i] = i;
     }
-    //fill the rest of the matrix
+    //fill the rest of the matrix row by row
     for (int a = 1; a < reference.length + 1; a++) {
+      //left border
+      current[0] = a;
       for (int b = 1; b < input.length + 1; b++) {
-    	  
+
         int right = 0;
         //compare cell left to and over cell to fill, if match =0 otherwise 1
         if (!reference[a - 1].equals(input[b - 1])) {
           right = 1;
         }
         //check if going down or going to the right has a smaller distance
-        int mini = matrix[a - 1][b] + 1;
-        if (matrix[a][b - 1] + 1 < mini) {
-          mini = matrix[a][b - 1] + 1;
+        int mini = last[b] + 1;
+        if (current[b - 1] + 1 < mini) {
+          mini = current[b - 1] + 1;
+        }
+
+        //check if last cell adding the new distance compared to the direction chosen is smaller
+        if (last[b - 1] + right < mini) {
+          //if yes, set values from best direction to that
+          mini = last[b - 1] + right;
+        }
+        //set actual cell to that value
+        current[b] = mini;
+      }
+      //the filled row becomes the previous one
+      int[] temp = last;
+      last = current;
+      current = temp;
+    }
+    //return the bottom right value as minimal distance.
+    return last[input.length];
+  }
+
+ /**
+  * calculates Levenshtein distance between two arrays of phoneme IDs
+  * @see info.knowledgeTechnology.docks.Phoneme.PhonemeAlphabet
+  * @param reference
+  * @param input
+  * @return
+  */
+  public int diff(byte[] reference, byte[] input) {
+
+    int[][] rows = getRows(input.length + 1);
+    //previous row of the matrix
+    int[] last = rows[0];
+    //row of the matrix to fill
+    int[] current = rows[1];
+
+    //initilize the top border with increasing values
+    for (int i = 0; i < input.length + 1; i++) {
+      last[i] = i;
+    }
+    //fill the rest of the matrix row by row
+    for (int a = 1; a < reference.length + 1; a++) {
+      byte r = reference[a - 1];
+      //left border
+      current[0] = a;
+      for (int b = 1; b < input.length + 1; b++) {
+
+        //compare the IDs, if match =0 otherwise 1
+        int right = (r == input[b - 1]) ? 0 : 1;
+
+        //check if going down or going to the right has a smaller distance
+        int mini = last[b] + 1;
+        if (current[b - 1] + 1 < mini) {
+          mini = current[b - 1] + 1;
+        }
+
+        //check if last cell adding the new distance compared to the direction chosen is smaller
+        if (last[b - 1] + right < mini) {
+          mini = last[b - 1] + right;
+        }
+        //set actual cell to that value
+        current[b] = mini;
+      }
+      //the filled row becomes the previous one
+      int[] temp = last;
+      last = current;
+      current = temp;
+    }
+    //return the bottom right value as minimal distance.
+    return last[input.length];
+  }
+
+ /**
+  * calculates Levenshtein distance between two arrays of phoneme IDs, but gives up
+  * as soon as the distance is known to be larger than maxDistance.
+  * only the diagonal band of width maxDistance is filled (Ukkonen cutoff)
+  * @param reference
+  * @param input
+  * @param maxDistance the largest distance of interest
+  * @return the distance, or maxDistance+1 if it is larger than maxDistance
+  */
+  public int diff(byte[] reference, byte[] input, int maxDistance) {
+
+    int tooLarge = maxDistance + 1;
+    //the length difference alone needs that many insertions or deletions
+    if (Math.abs(reference.length - input.length) > maxDistance) {
+      return tooLarge;
+    }
+
+    int[][] rows = getRows(input.length + 2);
+    //previous row of the matrix
+    int[] last = rows[0];
+    //row of the matrix to fill
+    int[] current = rows[1];
+
+    //initilize the top border inside the band, mark the first cell outside
+    int hi = Math.min(input.length, maxDistance);
+    for (int i = 0; i < hi + 1; i++) {
+      last[i] = i;
+    }
+    last[hi + 1] = tooLarge;
+
+    //fill the band row by row
+    for (int a = 1; a < reference.length + 1; a++) {
+      byte r = reference[a - 1];
+      int lo = Math.max(1, a - maxDistance);
+      hi = Math.min(input.length, a + maxDistance);
+
+      //left border, or the first cell left of the band
+      current[lo - 1] = (lo == 1 && a <= maxDistance) ? a : tooLarge;
+      int rowMin = current[lo - 1];
+      for (int b = lo; b < hi + 1; b++) {
+
+        //compare the IDs, if match =0 otherwise 1
+        int right = (r == input[b - 1]) ? 0 : 1;
+
+        //check if going down or going to the right has a smaller distance
+        int mini = last[b] + 1;
+        if (current[b - 1] + 1 < mini) {
+          mini = current[b - 1] + 1;
         }
-        
+
         //check if last cell adding the new distance compared to the direction chosen is smaller
-        if (matrix[a - 1][b - 1] + right < mini) {
-        	//if yes, set values from best direction to that
-          mini = matrix[a - 1][b - 1] + right; 
+        if (last[b - 1] + right < mini) {
+          mini = last[b - 1] + right;
         }
         //set actual cell to that value
-        matrix[a][b] = mini;
+        current[b] = mini;
+        if (mini < rowMin) {
+          rowMin = mini;
+        }
+      }
+      //distances never decrease from one row to the next, so stop here
+      if (rowMin > maxDistance) {
+        return tooLarge;
       }
+      //mark the first cell right of the band for the next row
+      current[hi + 1] = tooLarge;
+
+      //the filled row becomes the previous one
+      int[] temp = last;
+      last = current;
+      current = temp;
     }
     //return the bottom right value as minimal distance.
-    return matrix[reference.length][input.length];
+    return Math.min(last[input.length], tooLarge);
   }
 }
\ No newline at end of file
@@ -0,0 +1,208 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech 
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased;
+
+import info.knowledgeTechnology.docks.Phoneme.PhonemeContainer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * stores the phoneme sequences of a sentence list in a trie. the Levenshtein matrix
+ * is calculated row by row down the trie, so the rows of a prefix shared by many
+ * sentences are calculated once. a branch is left as soon as the smallest value of
+ * its row shows that no sentence below can beat the best one found so far
+ */
+public class PhonemeTrie {
+
+	/**
+	 * best sentence found by findBest
+	 */
+	public static class Match {
+		/**
+		 * confidence of the sentence, 1 - distance / sentence length
+		 */
+		public float confidence = -1.0f;
+		/**
+		 * index of the sentence in the sentence list
+		 */
+		public int sentence = -1;
+	}
+
+	//nodes are stored in arrays, node 0 is the root
+	private byte[] symbol = new byte[1024];
+	private int[] firstChild = new int[1024];
+	private int[] nextSibling = new int[1024];
+	//length of the longest sentence below a node
+	private int[] maxLength = new int[1024];
+	//sentences ending at a node, as linked list through nextTerminal
+	private int[] firstTerminal = new int[1024];
+	private int[] nextTerminal;
+	private int nodeCount = 1;
+	private int depth;
+
+	//per search
+	private int[][] rows;
+	private byte[] input;
+	private boolean found;
+
+	/**
+	 * builds the trie for a list of sentences
+	 * @param sentences phoneme containers of the sentences, indexed by position
+	 */
+	public PhonemeTrie(List<PhonemeContainer> sentences) {
+		firstChild[0] = -1;
+		nextSibling[0] = -1;
+		firstTerminal[0] = -1;
+		nextTerminal = new int[sentences.size()];
+		for (int j = 0; j < sentences.size(); j++) {
+			byte[] phonemes = sentences.get(j).getPhonemeIds();
+			depth = Math.max(depth, phonemes.length);
+			int node = 0;
+			maxLength[0] = Math.max(maxLength[0], phonemes.length);
+			for (byte p : phonemes) {
+				node = child(node, p);
+				maxLength[node] = Math.max(maxLength[node], phonemes.length);
+			}
+			nextTerminal[j] = firstTerminal[node];
+			firstTerminal[node] = j;
+		}
+	}
+
+	/**
+	 * 
+	 * @return number of nodes including the root
+	 */
+	public int size() {
+		return nodeCount;
+	}
+
+	private int child(int node, byte p) {
+		for (int c = firstChild[node]; c != -1; c = nextSibling[c])
+			if (symbol[c] == p)
+				return c;
+		if (nodeCount == symbol.length) {
+			int size = symbol.length * 2;
+			symbol = Arrays.copyOf(symbol, size);
+			firstChild = Arrays.copyOf(firstChild, size);
+			nextSibling = Arrays.copyOf(nextSibling, size);
+			maxLength = Arrays.copyOf(maxLength, size);
+			firstTerminal = Arrays.copyOf(firstTerminal, size);
+		}
+		int c = nodeCount++;
+		symbol[c] = p;
+		firstChild[c] = -1;
+		firstTerminal[c] = -1;
+		nextSibling[c] = firstChild[node];
+		firstChild[node] = c;
+		return c;
+	}
+
+	private void prepare(byte[] input) {
+		this.input = input;
+		if (rows == null || rows.length < depth + 1 || rows[0].length < input.length + 1)
+			rows = new int[depth + 1][Math.max(input.length + 1, rows == null ? 0 : rows[0].length)];
+		for (int a = 0; a < input.length + 1; a++)
+			rows[0][a] = a;
+	}
+
+	/**
+	 * calculates the row of a node from the row of its parent
+	 * @return smallest value of the row
+	 */
+	private int fillRow(int node, int d) {
+		int[] last = rows[d - 1];
+		int[] current = rows[d];
+		byte s = symbol[node];
+		current[0] = d;
+		int rowMin = d;
+		for (int a = 1; a < input.length + 1; a++) {
+			int right = (input[a - 1] == s) ? 0 : 1;
+			int mini = last[a] + 1;
+			if (current[a - 1] + 1 < mini)
+				mini = current[a - 1] + 1;
+			if (last[a - 1] + right < mini)
+				mini = last[a - 1] + right;
+			current[a] = mini;
+			if (mini < rowMin)
+				rowMin = mini;
+		}
+		return rowMin;
+	}
+
+	/**
+	 * finds the sentence with the highest confidence for an input. best is only replaced
+	 * by a sentence with at least its confidence, on equal confidence the larger sentence
+	 * index wins. this is the result of a loop over all sentences that keeps the last best one,
+	 * also when it is called for every entry of an n-best list in order.
+	 * calls on the same trie are serialized
+	 * @param input phoneme IDs of the hypothesis
+	 * @param best best match so far, updated
+	 * @return true if best was replaced
+	 */
+	public synchronized boolean findBest(byte[] input, Match best) {
+		prepare(input);
+		found = false;
+		visitBest(0, 0, 0, best);
+		return found;
+	}
+
+	private void visitBest(int node, int d, int rowMin, Match best) {
+		//the distance of a sentence below is at least rowMin, the confidence highest for the longest one
+		float bound = 1.0f - Math.min(1.0f, ((float) rowMin) / maxLength[node]);
+		if (bound < best.confidence)
+			return;
+
+		for (int j = firstTerminal[node]; j != -1; j = nextTerminal[j]) {
+			float confidence = 1.0f - Math.min(1.0f, ((float) rows[d][input.length]) / d);
+			if (confidence > best.confidence
+					|| (confidence == best.confidence && (!found || j > best.sentence))) {
+				best.confidence = confidence;
+				best.sentence = j;
+				found = true;
+			}
+		}
+		for (int c = firstChild[node]; c != -1; c = nextSibling[c])
+			visitBest(c, d + 1, fillRow(c, d + 1), best);
+	}
+
+	/**
+	 * offers all sentences that can enter the selector.
+	 * calls on the same trie are serialized
+	 * @param input phoneme IDs of the hypothesis
+	 * @param hypothesis index of the hypothesis in the n-best list
+	 * @param selector
+	 */
+	public synchronized void findTopK(byte[] input, int hypothesis, TopKSelector selector) {
+		prepare(input);
+		visitTopK(0, 0, 0, hypothesis, selector);
+	}
+
+	private void visitTopK(int node, int d, int rowMin, int hypothesis, TopKSelector selector) {
+		if (selector.isFull() && rowMin > selector.getWorstDistance())
+			return;
+		for (int j = firstTerminal[node]; j != -1; j = nextTerminal[j])
+			selector.offer(rows[d][input.length], j, hypothesis);
+		for (int c = firstChild[node]; c != -1; c = nextSibling[c])
+			visitTopK(c, d + 1, fillRow(c, d + 1), hypothesis, selector);
+	}
+}
@@ -0,0 +1,203 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech 
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased;
+
+import java.util.Arrays;
+
+/**
+ * keeps the k best (distance, sentence, n-best index) triples of a search without
+ * creating an object per triple. the triples are packed into longs and kept in a
+ * bounded max-heap, so a triple that is not better than the worst kept one is rejected in O(1).
+ * every sentence is kept at most once, with its best triple. the kept sentences are scanned
+ * for that, so keeping a triple takes O(k), which is cheap for the small k of an n-best result.
+ * triples are ordered by distance, then by n-best index, then by sentence index
+ */
+public class TopKSelector {
+
+	private static final int SENTENCE_BITS = 32;
+	private static final int HYPOTHESIS_BITS = 11;
+	private static final int DISTANCE_BITS = 20;
+
+	/**
+	 * largest n-best index that can be stored
+	 */
+	public static final int MAX_HYPOTHESIS = (1 << HYPOTHESIS_BITS) - 1;
+	/**
+	 * larger distances are stored as this value
+	 */
+	public static final int MAX_DISTANCE = (1 << DISTANCE_BITS) - 1;
+
+	private long[] heap;
+	private int size;
+
+	/**
+	 * 
+	 * @param k number of triples to keep
+	 */
+	public TopKSelector(int k) {
+		if (k < 0)
+			throw new IllegalArgumentException("k must not be negative: " + k);
+		heap = new long[k];
+	}
+
+	/**
+	 * offers a triple
+	 * @param distance Levenshtein distance
+	 * @param sentence index of the sentence in the sentence list
+	 * @param hypothesis index of the n-best entry
+	 * @return true if the triple was kept
+	 */
+	public boolean offer(int distance, int sentence, int hypothesis) {
+		if (hypothesis < 0 || hypothesis > MAX_HYPOTHESIS)
+			throw new IllegalArgumentException("n-best index out of range: " + hypothesis);
+		long key = ((long) Math.min(distance, MAX_DISTANCE) << (HYPOTHESIS_BITS + SENTENCE_BITS))
+				| ((long) hypothesis << SENTENCE_BITS) | (sentence & 0xFFFFFFFFL);
+		return offer(key);
+	}
+
+	private boolean offer(long key) {
+		//not better than the worst kept triple
+		if (size == heap.length && (size == 0 || key >= heap[0]))
+			return false;
+
+		//the sentence may already be kept with another n-best entry
+		int sentence = sentence(key);
+		for (int i = 0; i < size; i++) {
+			if (sentence(heap[i]) == sentence) {
+				if (key >= heap[i])
+					return false;
+				heap[i] = key;
+				siftDown(i);
+				return true;
+			}
+		}
+
+		if (size < heap.length) {
+			heap[size] = key;
+			siftUp(size);
+			size++;
+		} else {
+			heap[0] = key;
+			siftDown(0);
+		}
+		return true;
+	}
+
+	/**
+	 * offers all triples kept by another selector
+	 * @param other
+	 */
+	public void addAll(TopKSelector other) {
+		for (int i = 0; i < other.size; i++)
+			offer(other.heap[i]);
+	}
+
+	/**
+	 * 
+	 * @return true if k triples are kept
+	 */
+	public boolean isFull() {
+		return size == heap.length;
+	}
+
+	/**
+	 * 
+	 * @return distance of the worst kept triple. a triple needs at most this distance to be kept by a full selector
+	 */
+	public int getWorstDistance() {
+		return size == 0 ? MAX_DISTANCE : distance(heap[0]);
+	}
+
+	/**
+	 * 
+	 * @return number of kept triples
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 
+	 * @return kept sentence indices, best first
+	 */
+	public int[] getSentences() {
+		long[] sorted = sorted();
+		int[] result = new int[size];
+		for (int i = 0; i < size; i++)
+			result[i] = sentence(sorted[i]);
+		return result;
+	}
+
+	/**
+	 * 
+	 * @return distances of the kept sentences, best first
+	 */
+	public int[] getDistances() {
+		long[] sorted = sorted();
+		int[] result = new int[size];
+		for (int i = 0; i < size; i++)
+			result[i] = distance(sorted[i]);
+		return result;
+	}
+
+	private long[] sorted() {
+		long[] sorted = new long[size];
+		System.arraycopy(heap, 0, sorted, 0, size);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	private static int sentence(long key) {
+		return (int) key;
+	}
+
+	private static int distance(long key) {
+		return (int) (key >>> (HYPOTHESIS_BITS + SENTENCE_BITS));
+	}
+
+	private void siftUp(int i) {
+		long key = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (heap[parent] >= key)
+				break;
+			heap[i] = heap[parent];
+			i = parent;
+		}
+		heap[i] = key;
+	}
+
+	private void siftDown(int i) {
+		long key = heap[i];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && heap[child + 1] > heap[child])
+				child++;
+			if (key >= heap[child])
+				break;
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = key;
+	}
+}
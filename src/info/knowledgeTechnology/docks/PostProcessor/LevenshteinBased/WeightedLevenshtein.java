@@ -0,0 +1,128 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech 
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased;
+
+import info.knowledgeTechnology.docks.Phoneme.PhonemeAlphabet;
+
+/**
+ * Levenshtein distance with substitution costs between 0 and 1 per phoneme pair,
+ * e.g. derived from the confusion scores of PhonemeSubstitution. insertions and
+ * deletions cost 1. phonemes outside the cost matrix cost 0 if equal and 1 otherwise
+ * @see info.knowledgeTechnology.docks.Phoneme.PhonemeSubstitution#getSubstitutionCosts()
+ */
+public class WeightedLevenshtein {
+
+	//substitution costs for all pairs of IDs, reference ID * MAX_SIZE + input ID
+	private float[] costs = new float[PhonemeAlphabet.MAX_SIZE * PhonemeAlphabet.MAX_SIZE];
+
+	//two rows of the distance matrix per thread, grown on demand
+	private static final ThreadLocal<float[][]> scratch = new ThreadLocal<float[][]>() {
+		@Override
+		protected float[][] initialValue() {
+			return new float[][] { new float[64], new float[64] };
+		}
+	};
+
+	/**
+	 * 
+	 * @param substitutionCosts costs indexed by the IDs of the PhonemeAlphabet
+	 */
+	public WeightedLevenshtein(float[][] substitutionCosts) {
+		for (int r = 0; r < PhonemeAlphabet.MAX_SIZE; r++)
+			for (int c = 0; c < PhonemeAlphabet.MAX_SIZE; c++) {
+				float cost = (r == c) ? 0.0f : 1.0f;
+				if (r < substitutionCosts.length && c < substitutionCosts[r].length)
+					cost = substitutionCosts[r][c];
+				costs[r * PhonemeAlphabet.MAX_SIZE + c] = cost;
+			}
+	}
+
+	private static float[][] getRows(int length) {
+		float[][] rows = scratch.get();
+		if (rows[0].length < length) {
+			int size = Math.max(length, rows[0].length * 2);
+			rows[0] = new float[size];
+			rows[1] = new float[size];
+		}
+		return rows;
+	}
+
+	/**
+	 * calculates the weighted distance between two arrays of phoneme IDs
+	 * @param reference
+	 * @param input
+	 * @return
+	 */
+	public float diff(byte[] reference, byte[] input) {
+		return diff(reference, input, Float.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * calculates the weighted distance between two arrays of phoneme IDs, but gives up
+	 * as soon as the distance is known to be larger than maxDistance
+	 * @param reference
+	 * @param input
+	 * @param maxDistance the largest distance of interest
+	 * @return the distance, or Float.POSITIVE_INFINITY if it is larger than maxDistance
+	 */
+	public float diff(byte[] reference, byte[] input, float maxDistance) {
+		//the length difference alone needs that many insertions or deletions
+		if (Math.abs(reference.length - input.length) > maxDistance)
+			return Float.POSITIVE_INFINITY;
+
+		float[][] rows = getRows(input.length + 1);
+		//previous row of the matrix
+		float[] last = rows[0];
+		//row of the matrix to fill
+		float[] current = rows[1];
+
+		for (int i = 0; i < input.length + 1; i++)
+			last[i] = i;
+		for (int a = 1; a < reference.length + 1; a++) {
+			int offset = (reference[a - 1] & 0xFF) * PhonemeAlphabet.MAX_SIZE;
+			current[0] = a;
+			float rowMin = a;
+			for (int b = 1; b < input.length + 1; b++) {
+				//deletion or insertion
+				float mini = last[b] + 1.0f;
+				if (current[b - 1] + 1.0f < mini)
+					mini = current[b - 1] + 1.0f;
+				//substitution weighted by the cost of the pair
+				float substitution = last[b - 1] + costs[offset + (input[b - 1] & 0xFF)];
+				if (substitution < mini)
+					mini = substitution;
+				current[b] = mini;
+				if (mini < rowMin)
+					rowMin = mini;
+			}
+			//distances never decrease from one row to the next
+			if (rowMin > maxDistance)
+				return Float.POSITIVE_INFINITY;
+
+			float[] temp = last;
+			last = current;
+			current = temp;
+		}
+		float distance = last[input.length];
+		return distance > maxDistance ? Float.POSITIVE_INFINITY : distance;
+	}
+}
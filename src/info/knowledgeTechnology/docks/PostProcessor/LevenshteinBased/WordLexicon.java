@@ -0,0 +1,156 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech 
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased;
+
+import info.knowledgeTechnology.docks.Phoneme.PhonemeAlphabet;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * word list for matching single words. the words are put into buckets by the number
+ * of their phonemes and by their first phoneme. a word is first compared to the words
+ * of its own length and first phoneme, which usually gives a good match early.
+ * lengths and buckets that cannot beat the best match are skipped without calculating
+ * a distance
+ */
+public class WordLexicon {
+
+	//word indices by phoneme count and first phoneme ID, ascending
+	private int[][][] buckets;
+	private byte[][] phonemes;
+	private EditDistance ls;
+
+	/**
+	 * creates the buckets for a list of words
+	 * @param words phoneme containers of the words, indexed by position
+	 * @param ls distance measure used for the words
+	 */
+	public WordLexicon(List<PhonemeContainer> words, EditDistance ls) {
+		this.ls = ls;
+		phonemes = new byte[words.size()][];
+		int maxLength = 0;
+		for (int j = 0; j < phonemes.length; j++) {
+			phonemes[j] = words.get(j).getPhonemeIds();
+			maxLength = Math.max(maxLength, phonemes[j].length);
+		}
+
+		//collect the word indices per bucket
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		ArrayList<Integer>[][] lists = new ArrayList[maxLength + 1][PhonemeAlphabet.MAX_SIZE];
+		for (int j = 0; j < phonemes.length; j++) {
+			int length = phonemes[j].length;
+			//words without phonemes never get a confidence
+			if (length == 0)
+				continue;
+			int first = phonemes[j][0] & 0xFF;
+			if (lists[length][first] == null)
+				lists[length][first] = new ArrayList<Integer>();
+			lists[length][first].add(j);
+		}
+		buckets = new int[maxLength + 1][PhonemeAlphabet.MAX_SIZE][];
+		for (int length = 0; length < maxLength + 1; length++)
+			for (int first = 0; first < PhonemeAlphabet.MAX_SIZE; first++)
+				if (lists[length][first] != null) {
+					ArrayList<Integer> list = lists[length][first];
+					int[] bucket = new int[list.size()];
+					for (int i = 0; i < bucket.length; i++)
+						bucket[i] = list.get(i);
+					buckets[length][first] = bucket;
+				}
+	}
+
+	/**
+	 * finds the word with the highest confidence (1 - distance / word length).
+	 * on equal confidence the larger word index wins, like in a loop over all words
+	 * @param input phoneme IDs of a word
+	 * @return the best word, sentence is -1 if the lexicon is empty
+	 */
+	public PhonemeTrie.Match find(byte[] input) {
+		PhonemeTrie.Match best = new PhonemeTrie.Match();
+		int n = input.length;
+		int maxLength = buckets.length - 1;
+
+		//go from the length of the input to shorter and longer words.
+		//the best reachable confidence only decreases on both sides
+		boolean shorter = true;
+		boolean longer = n < maxLength;
+		for (int delta = 0; shorter || longer; delta++) {
+			if (shorter) {
+				int length = n - delta;
+				if (length < 1 || bound(n, length) < best.confidence)
+					shorter = false;
+				else if (length <= maxLength)
+					findInLength(input, length, best);
+			}
+			if (longer && delta > 0) {
+				int length = n + delta;
+				if (length > maxLength || bound(n, length) < best.confidence)
+					longer = false;
+				else
+					findInLength(input, length, best);
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * best confidence a word of the given length can reach
+	 */
+	private static float bound(int inputLength, int length) {
+		return 1.0f - Math.min(1.0f, ((float) Math.abs(inputLength - length)) / length);
+	}
+
+	private void findInLength(byte[] input, int length, PhonemeTrie.Match best) {
+		int[][] byFirst = buckets[length];
+		int lengthDifference = Math.abs(input.length - length);
+		int first = input.length > 0 ? input[0] & 0xFF : -1;
+
+		//words starting with the same phoneme first
+		if (first >= 0 && byFirst[first] != null)
+			findInBucket(input, byFirst[first], length, lengthDifference, best);
+		//other words differ in at least one phoneme
+		for (int f = 0; f < byFirst.length; f++)
+			if (f != first && byFirst[f] != null)
+				findInBucket(input, byFirst[f], length, Math.max(1, lengthDifference), best);
+	}
+
+	private void findInBucket(byte[] input, int[] bucket, int length, int minDistance,
+			PhonemeTrie.Match best) {
+		for (int j : bucket) {
+			//largest distance that can still reach the best confidence so far
+			int maxDist = Math.min(length, (int) ((1.0f - best.confidence) * length) + 1);
+			if (maxDist < length && minDistance > maxDist)
+				return;
+			int diff = ls.diff(input, phonemes[j], maxDist);
+			if (maxDist < length && diff > maxDist)
+				continue;
+			float confidence = 1.0f - Math.min(1.0f, ((float) diff) / length);
+			if (confidence > best.confidence
+					|| (confidence == best.confidence && j > best.sentence)) {
+				best.confidence = confidence;
+				best.sentence = j;
+			}
+		}
+	}
+}
@@ -21,11 +21,17 @@
  */
 package info.knowledgeTechnology.docks.PostProcessor;
 
-import info.knowledgeTechnology.docks.Data.LevenshteinResult;
 import info.knowledgeTechnology.docks.Data.Result;
 import info.knowledgeTechnology.docks.Phoneme.PhonemeContainer;
 import info.knowledgeTechnology.docks.Phoneme.PhonemeCreator;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeNgramIndex;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeSubstitution;
+import info.knowledgeTechnology.docks.Phoneme.PronunciationDictionary;
+import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.EditDistance;
 import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.Levenshtein;
+import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.PhonemeTrie;
+import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.TopKSelector;
+import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.WeightedLevenshtein;
 import info.knowledgeTechnology.docks.Recognizer.RawGoogleRecognizer;
 import info.knowledgeTechnology.docks.Recognizer.StandardRecognizer;
 import info.knowledgeTechnology.docks.Utils.ConsistencyManager;
@@ -33,7 +39,9 @@ import info.knowledgeTechnology.docks.Utils.Printer;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import javax.sound.sampled.AudioInputStream;
 /**
@@ -47,10 +55,18 @@ public class SentencelistPostProcessor  implements StandardRecognizer{
 	private RawGoogleRecognizer br;
 	private PhonemeCreator pc;
 	private ArrayList<PhonemeContainer> phonemesGrammar;
-	private Levenshtein ls;
+	private EditDistance ls;
 	private int numberOfResults;
 	private int referenceRecognizer;
 	private String name = "LevenshteinRecognizer";
+	private ForkJoinPool pool;
+	private int chunkSize = 1024;
+	private int shortlistSize = 0;
+	private int ngramSize = 2;
+	private PhonemeTrie trie;
+	private WeightedLevenshtein weighted;
+	//weighted distances are kept in this many steps per phoneme when ranking several results
+	private static final int WEIGHT_SCALE = 1000;
 
 	/**
 	 * Creates a new Sentencelist postprocessor
@@ -92,10 +108,26 @@ public class SentencelistPostProcessor  implements StandardRecognizer{
 	 * @param numberOfResults
 	 */
 	public SentencelistPostProcessor(String configname,String sentenceListName,int numberOfResults) {
-		if(!ConsistencyManager.isConsistent(configname, sentenceListName))
+		this(configname,sentenceListName,numberOfResults,null);
+	}
+	
+	/**
+	 * Creates a new Sentencelist postprocessor in word mode: sentences are put together from the pronunciations of their words
+	 * (see PhonemeCreator.setDictionary)
+	 * @param configname
+	 * @param sentenceListName
+	 * @param numberOfResults
+	 * @param dictionary pronunciations of single words, e.g. PronunciationDictionary.forConfig(configname, modelType). null converts whole sentences by G2P
+	 */
+	public SentencelistPostProcessor(String configname,String sentenceListName,int numberOfResults,PronunciationDictionary dictionary) {
+		//the binary data base is kept, it is updated with the changed sentences only
+		boolean stale = ConsistencyManager.isStale(configname, sentenceListName+".bin", sentenceListName);
+		if(stale)
 			(new File("config/"+configname+"/"+sentenceListName+".ser")).delete();
     	Printer.printWithTime(TAG, "loading phoneme database");
-		pc = new PhonemeCreator("config/"+configname+"/"+sentenceListName);
+		pc = new PhonemeCreator("config/"+configname+"/"+sentenceListName, dictionary);
+		if(stale)
+			ConsistencyManager.recordArtifact(configname, sentenceListName+".bin", sentenceListName);
 		Printer.printWithTime(TAG, "getting phonemes for speech result");
 		ls = new Levenshtein();
 		phonemesGrammar = pc.pdb.arrayContent;
@@ -104,6 +136,107 @@ public class SentencelistPostProcessor  implements StandardRecognizer{
 		Printer.printWithTime(TAG, "SentencelistPostProcessor created");
 	}
 	
+	/**
+	 * Creates a new Sentencelist postprocessor for the sentences of a phoneme creator,
+	 * e.g. to share them between postprocessors
+	 * @param pc phoneme creator with a phoneme data base
+	 * @param numberOfResults
+	 */
+	public SentencelistPostProcessor(PhonemeCreator pc,int numberOfResults) {
+		this.pc = pc;
+		ls = new Levenshtein();
+		phonemesGrammar = pc.pdb.arrayContent;
+		this.numberOfResults=numberOfResults;
+		referenceRecognizer=-1;
+	}
+	
+	/**
+	 * sets the distance measure used to match phoneme sequences.
+	 * Levenshtein is used by default, BitParallelLevenshtein is faster for long sentence lists
+	 * @param editDistance (see LevenshteinBased)
+	 */
+	public void setEditDistance(EditDistance editDistance)
+	{
+		this.ls = editDistance;
+	}
+	
+	/**
+	 * weights substitutions by the confusion scores of the given PhonemeSubstitution method,
+	 * so similar sounding phonemes are cheaper to substitute than unrelated ones.
+	 * the sentence list is scanned (the trie is not used) in this mode
+	 * @param method (see PhonemeSubstitution), -1 for plain edit distance (default)
+	 */
+	public void setSubstitutionMethod(int method)
+	{
+		if (method < 0)
+			weighted = null;
+		else
+			weighted = new WeightedLevenshtein(PhonemeSubstitution.getInstance(method).getSubstitutionCosts());
+	}
+	
+	/**
+	 * scores the sentence list in parallel on the given pool. the n-best list is matched
+	 * against chunks of the sentence list and the results of the chunks are merged.
+	 * the result is the same as in the sequential mode
+	 * @param pool the pool to run on, null for sequential scoring (default)
+	 */
+	public void setForkJoinPool(ForkJoinPool pool)
+	{
+		this.pool = pool;
+	}
+	
+	/**
+	 * only matches the sentences sharing most phoneme bigrams with the n-best list.
+	 * larger shortlists find the best sentence more reliably, smaller ones are faster
+	 * @param shortlistSize number of sentences shortlisted per n-best entry, 0 to match all sentences (default)
+	 */
+	public void setShortlistSize(int shortlistSize)
+	{
+		setShortlistSize(shortlistSize, 2);
+	}
+	
+	/**
+	 * only matches the sentences sharing most phoneme n-grams with the n-best list.
+	 * the index is stored next to the cached phonemes of the sentence list
+	 * @param shortlistSize number of sentences shortlisted per n-best entry, 0 to match all sentences
+	 * @param ngramSize length of the n-grams (2 or 3 are useful)
+	 */
+	public void setShortlistSize(int shortlistSize, int ngramSize)
+	{
+		this.shortlistSize = shortlistSize;
+		this.ngramSize = ngramSize;
+		if (shortlistSize > 0)
+			pc.getIndex(ngramSize);
+	}
+	
+	/**
+	 * matches the n-best list against a trie of the sentence list instead of scanning all sentences.
+	 * the distances to shared prefixes are calculated once, which pays off for large lists
+	 * with many similar sentences. replaces the shortlist and the parallel scan when enabled
+	 * @param trieSearch true to use the trie, false to scan the sentence list (default)
+	 */
+	public void setTrieSearch(boolean trieSearch)
+	{
+		if (!trieSearch)
+			trie = null;
+		else if (trie == null)
+		{
+			Printer.printWithTime(TAG, "building phoneme trie");
+			trie = new PhonemeTrie(phonemesGrammar);
+			Printer.printWithTime(TAG, "phoneme trie has " + trie.size() + " nodes");
+		}
+	}
+	
+	/**
+	 * 
+	 * @param chunkSize number of sentences scored by one task in parallel mode (default 1024)
+	 */
+	public void setChunkSize(int chunkSize)
+	{
+		if (chunkSize < 1)
+			throw new IllegalArgumentException("chunk size must be positive: " + chunkSize);
+		this.chunkSize = chunkSize;
+	}
 	
 	
 /**
@@ -132,76 +265,87 @@ public class SentencelistPostProcessor  implements StandardRecognizer{
  * postprocess a result given by e.g. Google ASR
  * @param r the result
  */
-	@SuppressWarnings("unchecked")
 	public Result recognizeFromResult(Result r) {
 		
 //get phonemes for r
 		ArrayList<PhonemeContainer> phonemesSpeech = pc.getPhonemes(r);
 
+		if (phonemesSpeech == null)
+			return r;
+		return recognizeFromPhonemes(phonemesSpeech);
+	}
+
+/**
+ * postprocess the phonemes of an n-best list
+ * @param phonemesSpeech the phonemes of each entry of the n-best list
+ */
+	public Result recognizeFromPhonemes(ArrayList<PhonemeContainer> phonemesSpeech) {
+		Result r = null;
 
 		if (phonemesSpeech != null) {
 			Printer.printWithTime(TAG, "calculating levenshtein distances");
 
-			int minDist = 10000;
-
-			int result = -1;
-
+			byte[][] speech = new byte[phonemesSpeech.size()][];
+			for (int i = 0; i < speech.length; i++)
+				speech[i] = phonemesSpeech.get(i).getPhonemeIds();
 
 			Printer.printWithTime(TAG,"phonemesGrammar.size: "+phonemesGrammar.size());
+
+			//only match against the shortlisted sentences if an index is used
+			boolean useTrie = trie != null && weighted == null;
+			int[] candidates = useTrie ? null : shortlist(speech);
+			int total = candidates == null ? phonemesGrammar.size() : candidates.length;
 			
 			//if one result is preferred
-			float best_confidence = -1.0f;
 			if(numberOfResults==1)
 			{
 				//calculate Levenshtein distance for n-best list vs sentence list
 				//take the minimal distance
-				for (int i = 0; i < phonemesSpeech.size(); i++) {
-					for (int j = 0; j < phonemesGrammar.size(); j++) {
-						int diff = ls.diff(phonemesSpeech.get(i).getPhonemes(),
-								phonemesGrammar.get(j).getPhonemes());
-//						if (diff <= minDist) {
-//							if (diff < minDist) {
-//								minDist = diff;
-//								result = j;
-//
-//							}
-//						}
-						float confidence =  1.0f - Math.min(1.0f ,((float) diff)/phonemesGrammar.get(j).getPhonemes().length);
-						if (best_confidence <= confidence) {
-							best_confidence = confidence;
-							result = j;
-
-						}
-	
-					}
+				BestMatch best;
+				if (useTrie)
+					best = findBestInTrie(speech);
+				else if (pool == null)
+					best = findBest(speech, candidates, 0, total);
+				else
+					best = pool.invoke(new BestMatchTask(speech, candidates, 0, total));
+				//the shortlist did not contain any match, fall back to all sentences
+				if (best.sentence < 0 && candidates != null)
+				{
+					total = phonemesGrammar.size();
+					if (pool == null)
+						best = findBest(speech, null, 0, total);
+					else
+						best = pool.invoke(new BestMatchTask(speech, null, 0, total));
 				}
+				int result = best.sentence;
 				
 				Printer.printWithTime(TAG,"result is : "+result);
 				//return sentence with the minimal distance
 				//phonemesGrammar.get(result).print();
 				r = new Result();
 				r.addResult(phonemesGrammar.get(result).getResult());
-				r.setConfidence(best_confidence);
+				r.setConfidence(best.confidence);
 
 			} else
 			{
-				//do the same if more results are preferred
-				ArrayList<LevenshteinResult> resultList = new ArrayList<LevenshteinResult>();
-				for (int i = 0; i < phonemesSpeech.size(); i++) {
-					for (int j = 0; j < phonemesGrammar.size(); j++) {
-						int diff = ls.diff(phonemesSpeech.get(i).getPhonemes(),
-								phonemesGrammar.get(j).getPhonemes());
-						resultList.add(new LevenshteinResult(diff, j,i));
-					}
+				//do the same if more results are preferred, but only keep the best sentences
+				TopKSelector selector;
+				if (useTrie)
+				{
+					selector = new TopKSelector(numberOfResults);
+					for (int i = 0; i < speech.length; i++)
+						trie.findTopK(speech[i], i, selector);
 				}
+				else if (pool == null)
+					selector = findTopK(speech, candidates, 0, total);
+				else
+					selector = pool.invoke(new TopKTask(speech, candidates, 0, total));
 				
-				//sort the list of results by smallest distance
-				Collections.sort(resultList);
+				//sentences ordered by smallest distance
 				r = new Result();
-
-				for(int i =0;(i<numberOfResults) && (i<resultList.size());i++)
+				for (int id : selector.getSentences())
 				{
-					r.addResult(phonemesGrammar.get(resultList.get(i).getId()).getResult());
+					r.addResult(phonemesGrammar.get(id).getResult());
 				}
 
 				
@@ -215,6 +359,214 @@ public class SentencelistPostProcessor  implements StandardRecognizer{
 		return r;
 	}
 
+	/**
+	 * best sentence found for an n-best list
+	 */
+	private static class BestMatch {
+		float confidence = -1.0f;
+		int hypothesis = -1;
+		int sentence = -1;
+
+		/**
+		 * keeps the better of two matches. on equal confidence the later one in the order
+		 * of n-best index and sentence index wins, like in a single loop over all pairs
+		 * @param other
+		 * @return
+		 */
+		BestMatch merge(BestMatch other) {
+			if (other.confidence > confidence)
+				return other;
+			if (other.confidence < confidence)
+				return this;
+			if (other.hypothesis > hypothesis
+					|| (other.hypothesis == hypothesis && other.sentence > sentence))
+				return other;
+			return this;
+		}
+	}
+
+	/**
+	 * shortlists the sentences sharing most phoneme n-grams with any entry of the n-best list
+	 * @param speech phoneme IDs of the n-best list
+	 * @return ascending sentence indices, or null if no shortlist is used or no entry shares an n-gram with any sentence
+	 */
+	private int[] shortlist(byte[][] speech) {
+		if (shortlistSize <= 0)
+			return null;
+		PhonemeNgramIndex index = pc.getIndex(ngramSize);
+		BitSet selected = new BitSet(phonemesGrammar.size());
+		boolean shared = false;
+		for (byte[] s : speech) {
+			int[] shortlist = index.shortlist(s, shortlistSize);
+			if (shortlist == null)
+				continue;
+			shared = true;
+			for (int j : shortlist)
+				selected.set(j);
+		}
+		//nothing to shortlist by, so all sentences are matched
+		if (!shared)
+			return null;
+		int[] candidates = new int[selected.cardinality()];
+		int c = 0;
+		for (int j = selected.nextSetBit(0); j >= 0; j = selected.nextSetBit(j + 1))
+			candidates[c++] = j;
+		Printer.printWithTime(TAG, "shortlisted " + candidates.length + " sentences");
+		return candidates;
+	}
+
+	/**
+	 * finds the sentence with the highest confidence for the n-best list in the trie
+	 * @param speech phoneme IDs of the n-best list
+	 * @return
+	 */
+	private BestMatch findBestInTrie(byte[][] speech) {
+		BestMatch best = new BestMatch();
+		PhonemeTrie.Match match = new PhonemeTrie.Match();
+		for (int i = 0; i < speech.length; i++) {
+			if (trie.findBest(speech[i], match))
+				best.hypothesis = i;
+		}
+		best.confidence = match.confidence;
+		best.sentence = match.sentence;
+		return best;
+	}
+
+	/**
+	 * finds the sentence with the highest confidence for the n-best list in a range of the sentence list
+	 * @param speech phoneme IDs of the n-best list
+	 * @param candidates indices of the sentences to match, null for all sentences
+	 * @param from first position in candidates
+	 * @param to position in candidates after the last one
+	 * @return
+	 */
+	private BestMatch findBest(byte[][] speech, int[] candidates, int from, int to) {
+		BestMatch best = new BestMatch();
+		float best_confidence = -1.0f;
+		for (int i = 0; i < speech.length; i++) {
+			for (int k = from; k < to; k++) {
+				int j = candidates == null ? k : candidates[k];
+				byte[] grammar = phonemesGrammar.get(j).getPhonemeIds();
+				int length = grammar.length;
+				//largest distance that can still reach the best confidence so far.
+				//at the length of the sentence the confidence is 0 however large the distance is
+				float diff;
+				if (weighted == null) {
+					int maxDist = Math.min(length, (int) ((1.0f - best_confidence) * length) + 1);
+					//skip sentences whose length alone rules them out
+					if (maxDist < length && Math.abs(speech[i].length - length) > maxDist)
+						continue;
+					diff = ls.diff(speech[i], grammar, maxDist);
+					if (maxDist < length && diff > maxDist)
+						continue;
+				} else {
+					float maxDist = Math.min(length, (1.0f - best_confidence) * length + 1.0f);
+					diff = weighted.diff(speech[i], grammar, maxDist);
+					if (maxDist < length && diff > maxDist)
+						continue;
+				}
+				float confidence =  1.0f - Math.min(1.0f ,diff/length);
+				if (best_confidence <= confidence) {
+					best_confidence = confidence;
+					best.hypothesis = i;
+					best.sentence = j;
+				}
+			}
+		}
+		best.confidence = best_confidence;
+		return best;
+	}
+
+	/**
+	 * finds the numberOfResults sentences with the smallest distance to the n-best list in a range of the sentence list.
+	 * a sentence matched by several n-best entries is kept once
+	 * @param speech phoneme IDs of the n-best list
+	 * @param candidates indices of the sentences to match, null for all sentences
+	 * @param from first position in candidates
+	 * @param to position in candidates after the last one
+	 * @return
+	 */
+	private TopKSelector findTopK(byte[][] speech, int[] candidates, int from, int to) {
+		TopKSelector selector = new TopKSelector(numberOfResults);
+		for (int i = 0; i < speech.length; i++) {
+			for (int k = from; k < to; k++) {
+				int j = candidates == null ? k : candidates[k];
+				//once enough sentences are found, larger distances than the worst one do not matter
+				int maxDist = selector.isFull() ? selector.getWorstDistance() : TopKSelector.MAX_DISTANCE;
+				byte[] grammar = phonemesGrammar.get(j).getPhonemeIds();
+				int diff;
+				if (weighted == null)
+					diff = ls.diff(speech[i], grammar, maxDist);
+				else
+					diff = Math.round(Math.min(TopKSelector.MAX_DISTANCE,
+							weighted.diff(speech[i], grammar, (maxDist + 0.5f) / WEIGHT_SCALE) * WEIGHT_SCALE));
+				if (diff <= maxDist)
+					selector.offer(diff, j, i);
+			}
+		}
+		return selector;
+	}
+
+	/**
+	 * splits the sentences to match until a range is not larger than chunkSize
+	 */
+	@SuppressWarnings("serial")
+	private class BestMatchTask extends RecursiveTask<BestMatch> {
+		private byte[][] speech;
+		private int[] candidates;
+		private int from;
+		private int to;
+
+		BestMatchTask(byte[][] speech, int[] candidates, int from, int to) {
+			this.speech = speech;
+			this.candidates = candidates;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected BestMatch compute() {
+			if (to - from <= chunkSize)
+				return findBest(speech, candidates, from, to);
+			int middle = (from + to) >>> 1;
+			BestMatchTask left = new BestMatchTask(speech, candidates, from, middle);
+			left.fork();
+			BestMatch right = new BestMatchTask(speech, candidates, middle, to).compute();
+			return left.join().merge(right);
+		}
+	}
+
+	/**
+	 * splits the sentences to match until a range is not larger than chunkSize
+	 */
+	@SuppressWarnings("serial")
+	private class TopKTask extends RecursiveTask<TopKSelector> {
+		private byte[][] speech;
+		private int[] candidates;
+		private int from;
+		private int to;
+
+		TopKTask(byte[][] speech, int[] candidates, int from, int to) {
+			this.speech = speech;
+			this.candidates = candidates;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected TopKSelector compute() {
+			if (to - from <= chunkSize)
+				return findTopK(speech, candidates, from, to);
+			int middle = (from + to) >>> 1;
+			TopKTask left = new TopKTask(speech, candidates, from, middle);
+			left.fork();
+			TopKSelector right = new TopKTask(speech, candidates, middle, to).compute();
+			TopKSelector result = left.join();
+			result.addAll(right);
+			return result;
+		}
+	}
+
 	/**
 	 * calculate distances of an input vs an array of strings
 	 * @param input input sentence
@@ -232,8 +584,8 @@ public class SentencelistPostProcessor  implements StandardRecognizer{
 		//calculate distances
 		for (int i = 1; i < phonemesSpeech.size(); i++) 
 		{
-			int diff = ls.diff(phonemesSpeech.get(i).getPhonemes(),
-					phonemesSpeech.get(0).getPhonemes());
+			int diff = ls.diff(phonemesSpeech.get(i).getPhonemeIds(),
+					phonemesSpeech.get(0).getPhonemeIds());
 			res[i - 1] = diff;
 
 		}
@@ -241,6 +593,14 @@ public class SentencelistPostProcessor  implements StandardRecognizer{
 
 	}
 
+	/**
+	 * 
+	 * @return the phoneme creator holding the phonemes of the sentence list
+	 */
+	public PhonemeCreator getPhonemeCreator() {
+		return pc;
+	}
+
 	@Override
 	public int getReferenceRecognizer() {
 		// TODO Auto-generated method stub
@@ -0,0 +1,257 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech 
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package info.knowledgeTechnology.docks.PostProcessor.SphinxBased;
+
+import info.knowledgeTechnology.docks.Utils.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.cmu.sphinx.linguist.acoustic.Unit;
+import edu.cmu.sphinx.linguist.acoustic.UnitManager;
+import edu.cmu.sphinx.linguist.dictionary.Pronunciation;
+import edu.cmu.sphinx.linguist.dictionary.Word;
+import edu.cmu.sphinx.linguist.language.grammar.Grammar;
+import edu.cmu.sphinx.linguist.language.grammar.GrammarArc;
+import edu.cmu.sphinx.linguist.language.grammar.GrammarNode;
+
+/**
+ * the grammar nodes and unit maps of a compiled grammar. a compiled grammar is never changed,
+ * so all linguists whose grammars have the same content share one instance instead of compiling
+ * their own. instances are kept while at least one linguist is attached
+ */
+public class CompiledGrammar {
+
+	private static final Map<String, CompiledGrammar> compiled = new HashMap<String, CompiledGrammar>();
+
+	private final String hash;
+	private final GrammarNode initialNode;
+	//the ids of all units that can follow a grammar node
+	private final Map<GrammarNode, int[]> nodeToNextUnitArrayMap;
+	//the units a grammar node can start with
+	private final Map<GrammarNode, Set<Unit>> nodeToUnitSetMap;
+	private int references;
+
+	private CompiledGrammar(String hash, GrammarNode initialNode, Collection<GrammarNode> nodes) {
+		this.hash = hash;
+		this.initialNode = initialNode;
+		Map<GrammarNode, int[]> nextUnits = new HashMap<GrammarNode, int[]>();
+		Map<GrammarNode, Set<Unit>> unitSets = new HashMap<GrammarNode, Set<Unit>>();
+		for (GrammarNode node : nodes)
+			initUnitMaps(node, nextUnits, unitSets);
+		nodeToNextUnitArrayMap = Collections.unmodifiableMap(nextUnits);
+		nodeToUnitSetMap = Collections.unmodifiableMap(unitSets);
+	}
+
+	/**
+	 * attaches to the compiled version of an allocated grammar. the grammar is compiled if no grammar with the same content is attached yet
+	 * @param grammar
+	 * @return the shared compiled grammar, call release() when it is not used anymore
+	 */
+	public static CompiledGrammar attach(Grammar grammar) {
+		return attach(grammar.getInitialNode(), grammar.getGrammarNodes());
+	}
+
+	/**
+	 * attaches to the compiled version of a grammar given by its nodes
+	 * @param initialNode
+	 * @param nodes all nodes of the grammar
+	 * @return the shared compiled grammar, call release() when it is not used anymore
+	 */
+	public static CompiledGrammar attach(GrammarNode initialNode, Collection<GrammarNode> nodes) {
+		//hashing walks the whole grammar, so other linguists are not kept waiting for it
+		String hash = hash(initialNode, nodes);
+		synchronized (CompiledGrammar.class) {
+			CompiledGrammar grammar = compiled.get(hash);
+			if (grammar == null) {
+				grammar = new CompiledGrammar(hash, initialNode, nodes);
+				compiled.put(hash, grammar);
+			}
+			grammar.references++;
+			return grammar;
+		}
+	}
+
+	/**
+	 * detaches a linguist. the compiled grammar is dropped when the last linguist is detached
+	 */
+	public void release() {
+		synchronized (CompiledGrammar.class) {
+			if (references > 0 && --references == 0)
+				compiled.remove(hash);
+		}
+	}
+
+	/**
+	 * @return the number of grammars currently compiled
+	 */
+	public static synchronized int size() {
+		return compiled.size();
+	}
+
+	public String getHash() {
+		return hash;
+	}
+
+	public GrammarNode getInitialNode() {
+		return initialNode;
+	}
+
+	/**
+	 * @param node
+	 * @return the ids of all units that can follow the node
+	 */
+	public int[] getNextUnits(GrammarNode node) {
+		return nodeToNextUnitArrayMap.get(node);
+	}
+
+	/**
+	 * @param node
+	 * @return the units the node can start with
+	 */
+	public Set<Unit> getUnitSet(GrammarNode node) {
+		return nodeToUnitSetMap.get(node);
+	}
+
+	/**
+	 * computes a SHA-256 hash over the structure of a grammar: node ids, words with their
+	 * pronunciations and arcs with their probabilities
+	 * @param initialNode
+	 * @param nodes
+	 * @return the hash as hex string
+	 */
+	static String hash(GrammarNode initialNode, Collection<GrammarNode> nodes) {
+		MessageDigest digest = Hashing.sha256();
+		List<GrammarNode> sorted = new ArrayList<GrammarNode>(nodes);
+		Collections.sort(sorted, new Comparator<GrammarNode>() {
+			@Override
+			public int compare(GrammarNode n1, GrammarNode n2) {
+				return n1.getID() < n2.getID() ? -1 : (n1.getID() == n2.getID() ? 0 : 1);
+			}
+		});
+		digest.update((initialNode.getID() + "\n").getBytes(StandardCharsets.UTF_8));
+		StringBuilder sb = new StringBuilder();
+		for (GrammarNode node : sorted) {
+			sb.setLength(0);
+			sb.append(node.getID()).append(node.isFinalNode() ? 'F' : 'N');
+			for (Word[] alternative : node.getAlternatives()) {
+				sb.append('|');
+				for (Word word : alternative) {
+					sb.append(word.getSpelling()).append('(');
+					for (Pronunciation pronunciation : word.getPronunciations()) {
+						for (Unit unit : pronunciation.getUnits())
+							sb.append(unit.getName()).append(' ');
+						sb.append(';');
+					}
+					sb.append(')');
+				}
+			}
+			for (GrammarArc arc : node.getSuccessors())
+				sb.append('>').append(arc.getGrammarNode().getID()).append(':').append(arc.getProbability());
+			sb.append('\n');
+			digest.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+		}
+		return Hashing.toHex(digest);
+	}
+
+	/**
+	 * Initializes the unit maps for a node. There are two unit maps: (a) nodeToNextUnitArrayMap contains an
+	 * array of unit ids for all possible units that immediately follow the given grammar node. This is used to
+	 * determine the set of exit contexts for words within a grammar node. (b) nodeToUnitSetMap contains the set of
+	 * possible entry units for a given grammar node. This is typically used to determine if a path with a given right
+	 * context should branch into a particular grammar node
+	 *
+	 * @param node the units maps will be created for this node.
+	 */
+	private static void initUnitMaps(GrammarNode node, Map<GrammarNode, int[]> nodeToNextUnitArrayMap,
+			Map<GrammarNode, Set<Unit>> nodeToUnitSetMap) {
+
+		// collect the set of next units for this node
+
+		if (nodeToNextUnitArrayMap.get(node) == null) {
+			Set<GrammarNode> vistedNodes = new HashSet<GrammarNode>();
+			Set<Unit> unitSet = new HashSet<Unit>();
+
+			GrammarArc[] arcs = node.getSuccessors();
+			for (GrammarArc arc : arcs) {
+				GrammarNode nextNode = arc.getGrammarNode();
+				collectNextUnits(nextNode, vistedNodes, unitSet);
+			}
+			int[] nextUnits = new int[unitSet.size()];
+			int index = 0;
+			for (Unit unit : unitSet) {
+				nextUnits[index++] = unit.getBaseID();
+			}
+			nodeToNextUnitArrayMap.put(node, nextUnits);
+		}
+
+		// collect the set of entry units for this node
+
+		if (nodeToUnitSetMap.get(node) == null) {
+			Set<GrammarNode> vistedNodes = new HashSet<GrammarNode>();
+			Set<Unit> unitSet = new HashSet<Unit>();
+			collectNextUnits(node, vistedNodes, unitSet);
+			nodeToUnitSetMap.put(node, Collections.unmodifiableSet(unitSet));
+		}
+	}
+
+	/**
+	 * For the given grammar node, collect the set of possible next units.
+	 *
+	 * @param thisNode    the grammar node
+	 * @param vistedNodes the set of visited grammar nodes, used to ensure that we don't attempt to expand a particular
+	 *                    grammar node more than once (which could lead to a death spiral)
+	 * @param unitSet     the entry units are collected here.
+	 */
+	private static void collectNextUnits(GrammarNode thisNode,
+			Set<GrammarNode> vistedNodes, Set<Unit> unitSet) {
+		if (vistedNodes.contains(thisNode)) {
+			return;
+		}
+
+		vistedNodes.add(thisNode);
+		if (thisNode.isFinalNode()) {
+			unitSet.add(UnitManager.SILENCE);
+		} else if (!thisNode.isEmpty()) {
+			Word word = thisNode.getWord();
+			Pronunciation[] pronunciations = word.getPronunciations();
+			for (Pronunciation pronunciation : pronunciations) {
+				unitSet.add(pronunciation.getUnits()[0]);
+			}
+		} else {
+			GrammarArc[] arcs = thisNode.getSuccessors();
+			for (GrammarArc arc : arcs) {
+				GrammarNode nextNode = arc.getGrammarNode();
+				collectNextUnits(nextNode, vistedNodes, unitSet);
+			}
+		}
+	}
+}
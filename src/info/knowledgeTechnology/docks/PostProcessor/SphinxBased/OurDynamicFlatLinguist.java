@@ -12,13 +12,13 @@
 package info.knowledgeTechnology.docks.PostProcessor.SphinxBased;
 
 import info.knowledgeTechnology.docks.Data.PhoneData;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeAlphabet;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
 
@@ -49,6 +49,7 @@ import edu.cmu.sphinx.util.props.PropertySheet;
 import edu.cmu.sphinx.util.props.S4Boolean;
 import edu.cmu.sphinx.util.props.S4Component;
 import edu.cmu.sphinx.util.props.S4Double;
+import edu.cmu.sphinx.util.props.S4Integer;
 /**
  * A simple form of the linguist. It makes the following simplifying assumptions: 1) Zero or one word per grammar node
  * 2) No fan-in allowed ever 3) No composites (yet) 4) Only Unit, HMMState, and pronunciation states (and the
@@ -91,6 +92,14 @@ public class OurDynamicFlatLinguist implements Linguist, Configurable {
     @S4Component(type = AcousticModel.class)
     public final static String PHONE_LOOP_ACOUSTIC_MODEL = "phoneLoopAcousticModel";
 
+    /** The property for the maximum number of search states whose successors are cached. */
+    @S4Integer(defaultValue = 100000)
+    public final static String SUCCESSOR_CACHE_SIZE = "successorCacheSize";
+
+    /** The property that specifies whether to fill the successor cache from the grammar when allocating. */
+    @S4Boolean(defaultValue = false)
+    public final static String PREWARM_SUCCESSOR_CACHE = "prewarmSuccessorCache";
+
 
 
     // ----------------------------------
@@ -114,6 +123,8 @@ public class OurDynamicFlatLinguist implements Linguist, Configurable {
     private float logOutOfGrammarBranchProbability;
     private float logPhoneInsertionProbability;
     private boolean addOutOfGrammarBranch;
+    private int successorCacheSize = 100000;
+    private boolean prewarmSuccessorCache;
 
     // ------------------------------------
     // Data used for building and maintaining
@@ -122,19 +133,13 @@ public class OurDynamicFlatLinguist implements Linguist, Configurable {
     private SearchGraph searchGraph;
     private Logger logger;
     SearchStateArc outOfGrammarGraph;
+    // the initial node of our own grammar the search graph was compiled from
     private GrammarNode initialGrammarState;
 
-    // this map is used to manage the set of follow on units for a
-    // particular grammar node. It is used to select the set of
-    // possible right contexts as we leave a node
-
-    private Map<GrammarNode, int[]> nodeToNextUnitArrayMap;
-
-    // this map is used to manage the set of possible entry units for
-    // a grammar node. It is used to filter paths so that we only
-    // branch to grammar nodes that match the current right context.
+    // the grammar nodes and unit maps, shared with all linguists
+    // using a grammar with the same content
 
-    private Map<GrammarNode, Set<Unit>> nodeToUnitSetMap;
+    private CompiledGrammar compiledGrammar;
 
     // an empty arc (just waiting for Noah, I guess)
     private final SearchStateArc[] EMPTY_ARCS = new SearchStateArc[0];
@@ -194,6 +199,8 @@ public class DynamicFlatLinguist Javadoc)
         if (addOutOfGrammarBranch) {
             phoneLoopAcousticModel = (AcousticModel) ps.getComponent(PHONE_LOOP_ACOUSTIC_MODEL);
         }
+        successorCacheSize = ps.getInt(SUCCESSOR_CACHE_SIZE);
+        prewarmSuccessorCache = ps.getBoolean(PREWARM_SUCCESSOR_CACHE);
     }
 
 
@@ -225,12 +232,18 @@ public class DynamicFlatLinguist Javadoc)
         logger.info("Allocating DFLAT");
         allocateAcousticModel();
         grammar.allocate();
-        nodeToNextUnitArrayMap = new HashMap<GrammarNode, int[]>();
-        nodeToUnitSetMap = new HashMap<GrammarNode, Set<Unit>>();
+        successorCache = new SuccessorCache(successorCacheSize);
         Timer timer = TimerPool.getTimer(this, "compileGrammar");
         timer.start();
         compileGrammar();
         timer.stop();
+        if (prewarmSuccessorCache) {
+            timer = TimerPool.getTimer(this, "prewarmSuccessorCache");
+            timer.start();
+            prewarmSuccessorCache();
+            timer.stop();
+            logger.info("Prewarmed " + successorCache);
+        }
         logger.info("Done allocating  DFLAT");
     }
 
@@ -255,6 +268,13 @@ public class DynamicFlatLinguist Javadoc)
         if (acousticModel != null) {
             acousticModel.deallocate();
         }
+        logger.info(successorCache.toString());
+        successorCache.clear();
+        if (compiledGrammar != null) {
+            compiledGrammar.release();
+            compiledGrammar = null;
+            initialGrammarState = null;
+        }
         grammar.deallocate();
     }
 
@@ -296,89 +316,48 @@ public class DynamicFlatLinguist Javadoc)
     private void compileGrammar() {
         initialGrammarState = grammar.getInitialNode();
 
-        for (GrammarNode node : grammar.getGrammarNodes()) {
-            initUnitMaps(node);
+        CompiledGrammar previous = compiledGrammar;
+        compiledGrammar = CompiledGrammar.attach(grammar);
+        if (previous != null) {
+            previous.release();
         }
 
+        // cached successors belong to the states of the old grammar
+        successorCache.clear();
         searchGraph = new DynamicFlatSearchGraph();
     }
 
 
     /**
-     * Initializes the unit maps for this linguist. There are two unit maps: (a) nodeToNextUnitArrayMap contains an
-     * array of unit ids for all possible units that immediately follow the given grammar node. This is used to
-     * determine the set of exit contexts for words within a grammar node. (b) nodeToUnitSetMap contains the set of
-     * possible entry units for a given grammar node. This is typically used to determine if a path with a given right
-     * context should branch into a particular grammar node
-     *
-     * @param node the units maps will be created for this node.
+     * Expands the search graph breadth first from the initial state, which caches the successors of each
+     * expanded state, until the graph is exhausted or the successor cache is full
      */
-    private void initUnitMaps(GrammarNode node) {
-
-        // collect the set of next units for this node
-
-        if (nodeToNextUnitArrayMap.get(node) == null) {
-            Set<GrammarNode> vistedNodes = new HashSet<GrammarNode>();
-            Set<Unit> unitSet = new HashSet<Unit>();
-
-            GrammarArc[] arcs = node.getSuccessors();
-            for (GrammarArc arc : arcs) {
-                GrammarNode nextNode = arc.getGrammarNode();
-                collectNextUnits(nextNode, vistedNodes, unitSet);
-            }
-            int[] nextUnits = new int[unitSet.size()];
-            int index = 0;
-            for (Unit unit : unitSet) {
-                nextUnits[index++] = unit.getBaseID();
+    private void prewarmSuccessorCache() {
+        Set<SearchState> visited = new HashSet<SearchState>();
+        LinkedList<SearchState> queue = new LinkedList<SearchState>();
+        queue.add(searchGraph.getInitialState());
+        while (!queue.isEmpty() && visited.size() < successorCacheSize && !successorCache.isFull()) {
+            for (SearchStateArc arc : queue.removeFirst().getSuccessors()) {
+                SearchState state = arc.getState();
+                if (visited.add(state)) {
+                    queue.add(state);
+                }
             }
-            nodeToNextUnitArrayMap.put(node, nextUnits);
-        }
-
-        // collect the set of entry units for this node
-
-        if (nodeToUnitSetMap.get(node) == null) {
-            Set<GrammarNode> vistedNodes = new HashSet<GrammarNode>();
-            Set<Unit> unitSet = new HashSet<Unit>();
-            collectNextUnits(node, vistedNodes, unitSet);
-            nodeToUnitSetMap.put(node, unitSet);
         }
     }
 
 
     /**
-     * For the given grammar node, collect the set of possible next units.
+     * Returns the cache of successors, e.g. to read its statistics
      *
-     * @param thisNode    the grammar node
-     * @param vistedNodes the set of visited grammar nodes, used to ensure that we don't attempt to expand a particular
-     *                    grammar node more than once (which could lead to a death spiral)
-     * @param unitSet     the entry units are collected here.
+     * @return the successor cache
      */
-    private void collectNextUnits(GrammarNode thisNode,
-                                  Set<GrammarNode> vistedNodes, Set<Unit> unitSet) {
-        if (vistedNodes.contains(thisNode)) {
-            return;
-        }
-
-        vistedNodes.add(thisNode);
-        if (thisNode.isFinalNode()) {
-            unitSet.add(UnitManager.SILENCE);
-        } else if (!thisNode.isEmpty()) {
-            Word word = thisNode.getWord();
-            Pronunciation[] pronunciations = word.getPronunciations();
-            for (Pronunciation pronunciation : pronunciations) {
-                unitSet.add(pronunciation.getUnits()[0]);
-            }
-        } else {
-            GrammarArc[] arcs = thisNode.getSuccessors();
-            for (GrammarArc arc : arcs) {
-                GrammarNode nextNode = arc.getGrammarNode();
-                collectNextUnits(nextNode, vistedNodes, unitSet);
-            }
-        }
+    public SuccessorCache getSuccessorCache() {
+        return successorCache;
     }
 
 
-    final Map<SearchState, SearchStateArc[]> successorCache = new HashMap<SearchState, SearchStateArc[]>();
+    private SuccessorCache successorCache = new SuccessorCache(successorCacheSize);
 
     /** The base search state for this dynamic flat linguist. */
     abstract class FlatSearchState implements SearchState, SearchStateArc {
@@ -800,7 +779,7 @@ public class DynamicFlatLinguist Javadoc)
          * @return the set of IDs of all possible next units
          */
         int[] getNextUnits() {
-            return nodeToNextUnitArrayMap.get(node);
+            return compiledGrammar.getNextUnits(node);
         }
 
 
@@ -1081,6 +1060,8 @@ public class DynamicFlatLinguist Javadoc)
         private final PronunciationState pState;
         private final int index;
         private final boolean isLastUnitOfWord;
+        // id of the unit in the PhonemeAlphabet, used to look up its score
+        private final int unitId;
         
         private int numberOfTimesUsed = 0;
 
@@ -1110,6 +1091,8 @@ public class DynamicFlatLinguist Javadoc)
             this.index = which;
             isLastUnitOfWord =
                     which == p.getPronunciation().getUnits().length - 1;
+            unitId = PhonemeAlphabet.getId(
+                    p.getPronunciation().getUnits()[which].getName()) & 0xFF;
         }
 
 
@@ -1308,11 +1291,10 @@ public class DynamicFlatLinguist Javadoc)
 		@Override
 		public float getScore(Data data) {
 			//System.out.println("getting score");
-			String name = pState.getPronunciation().getUnits()[index].getName();
 			// TODO: if numberOfTimesUsed != 0 then add a penalty to the score
 			numberOfTimesUsed++;
 
-			return ((PhoneData) data).getConfusionScore(name,numberOfTimesUsed);
+			return ((PhoneData) data).getConfusionScore(unitId);
 		}
     }
 
@@ -1329,7 +1311,7 @@ public class DynamicFlatLinguist Javadoc)
         @Override
         public SearchState getInitialState() {
             InitialState initialState = new InitialState();
-            initialState.addArc(new GrammarState(grammar.getInitialNode()));
+            initialState.addArc(new GrammarState(compiledGrammar.getInitialNode()));
             // add an out-of-grammar branch if configured to do so
             return initialState;
         }
@@ -0,0 +1,182 @@
+/**
+ * DOCKS is a framework for post-processing results of Cloud-based speech 
+ * recognition systems.
+ * Copyright (C) 2014 Johannes Twiefel
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Contact:
+ * 7twiefel@informatik.uni-hamburg.de
+ */
+package info.knowledgeTechnology.docks.PostProcessor.SphinxBased;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.cmu.sphinx.linguist.SearchState;
+import edu.cmu.sphinx.linguist.SearchStateArc;
+
+/**
+ * bounded cache of the successors of search states. the states are spread over segments
+ * with their own lock, so concurrent searches rarely wait for each other. when a segment is
+ * full, its least recently used entry is evicted
+ */
+public class SuccessorCache {
+
+	private static final int SEGMENTS = 16;
+
+	private final int capacity;
+	private final LinkedHashMap<SearchState, SearchStateArc[]>[] segments;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * 
+	 * @param capacity maximum number of cached states, 0 disables the cache
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public SuccessorCache(int capacity) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("capacity must not be negative");
+		this.capacity = capacity;
+		segments = new LinkedHashMap[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; i++) {
+			//the segment capacities add up to the capacity
+			final int segmentCapacity = capacity / SEGMENTS + (i < capacity % SEGMENTS ? 1 : 0);
+			//access order makes the eldest entry the least recently used one
+			segments[i] = new LinkedHashMap<SearchState, SearchStateArc[]>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<SearchState, SearchStateArc[]> eldest) {
+					if (size() > segmentCapacity) {
+						evictions.incrementAndGet();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+	}
+
+	private LinkedHashMap<SearchState, SearchStateArc[]> segment(SearchState state) {
+		int hash = state.hashCode();
+		hash ^= hash >>> 16;
+		return segments[hash & (SEGMENTS - 1)];
+	}
+
+	/**
+	 * 
+	 * @param state
+	 * @return the cached successors, or null if there are none
+	 */
+	public SearchStateArc[] get(SearchState state) {
+		LinkedHashMap<SearchState, SearchStateArc[]> segment = segment(state);
+		SearchStateArc[] successors;
+		synchronized (segment) {
+			successors = segment.get(state);
+		}
+		if (successors == null)
+			misses.incrementAndGet();
+		else
+			hits.incrementAndGet();
+		return successors;
+	}
+
+	/**
+	 * 
+	 * @param state
+	 * @param successors the successors, must not be changed afterwards
+	 */
+	public void put(SearchState state, SearchStateArc[] successors) {
+		if (capacity == 0)
+			return;
+		LinkedHashMap<SearchState, SearchStateArc[]> segment = segment(state);
+		synchronized (segment) {
+			segment.put(state, successors);
+		}
+	}
+
+	/**
+	 * removes all entries and resets the counters
+	 */
+	public void clear() {
+		for (LinkedHashMap<SearchState, SearchStateArc[]> segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+		hits.set(0);
+		misses.set(0);
+		evictions.set(0);
+	}
+
+	/**
+	 * 
+	 * @return number of cached states
+	 */
+	public int size() {
+		int size = 0;
+		for (LinkedHashMap<SearchState, SearchStateArc[]> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * 
+	 * @return true if no further state can be added without evicting one
+	 */
+	public boolean isFull() {
+		return size() >= capacity;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * 
+	 * @return number of lookups that found successors
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * 
+	 * @return number of lookups that did not find successors
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * 
+	 * @return number of states removed to make room for new ones
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	@Override
+	public String toString() {
+		return "successor cache: " + size() + "/" + capacity + " states, " + hits + " hits, "
+				+ misses + " misses, " + evictions + " evictions";
+	}
+}
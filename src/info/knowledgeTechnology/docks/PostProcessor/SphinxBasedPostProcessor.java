@@ -32,10 +32,24 @@ import info.knowledgeTechnology.docks.Utils.ConsistencyManager;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import edu.cmu.sphinx.decoder.search.Token;
+import edu.cmu.sphinx.linguist.g2p.G2PConverter;
 import edu.cmu.sphinx.recognizer.Recognizer;
 import edu.cmu.sphinx.result.ConfidenceResult;
 import edu.cmu.sphinx.result.ConfidenceScorer;
@@ -51,10 +65,11 @@ import edu.cmu.sphinx.util.props.PropertyException;
 public class SphinxBasedPostProcessor  implements StandardRecognizer{
 	
 	private ConfigurationManager cm;
-	private Recognizer recognizer;
 
 	private PhonemeCreator pc;
-	private PhoneFrontEnd pfe;
+	//decoders not used by a request at the moment
+	private BlockingQueue<Decoder> decoders;
+	private int poolSize;
 	private int referenceRecognizer;
 
 	private String name = "PhonemeNgramRecognizer";
@@ -76,44 +91,107 @@ public class SphinxBasedPostProcessor  implements StandardRecognizer{
  */
 	public SphinxBasedPostProcessor(String configname, String modelType, float languageWeight, float wordInsertionProbability, int substitutionMethod)
 	{
+		this(configname,modelType,languageWeight,wordInsertionProbability,substitutionMethod,1);
+	}
+
+	/**
+	 * a recognizer, the phone frontend it reads from and a g2p converter. a decoder serves one request at a time
+	 */
+	private static class Decoder {
+		ConfigurationManager cm;
+		Recognizer recognizer;
+		PhoneFrontEnd pfe;
+		G2PConverter g2p;
+	}
+
+	/**
+	 * a sentence found by a decoder and its score normalized by the length of the decoded phoneme sequence
+	 */
+	private static class Hypothesis {
+		final String text;
+		final float score;
+		final Result source;
+
+		Hypothesis(String text, float score, Result source) {
+			this.text = text;
+			this.score = score;
+			this.source = source;
+		}
+	}
+
+/**
+ * creates a new sphinx based postprocessor that can postprocess several results at once
+ * @param configName name of the config. this is used as a prefix for all xml config, languague model, sentence list word list files etc.
+ * @param vocabFile path to the vocabulary
+ * @param languageWeight parameter used internally, but 0 here if you don't know what you are doing
+ * @param wordInsertionProbability parameter used internally, but 0 here if you don't know what you are doing
+ * @param substitutionMethod parameter used internally, but 0 here if you don't know what you are doing
+ * @param poolSize number of decoders, i.e. results postprocessed at the same time. further requests wait for a free decoder
+ */
+	public SphinxBasedPostProcessor(String configname, String modelType, float languageWeight, float wordInsertionProbability, int substitutionMethod, int poolSize)
+	{
+		if(poolSize < 1)
+			throw new IllegalArgumentException("poolSize must be at least 1");
 		String basepath = "config/"+configname+"/"; 
 		if(modelType == "docks_ngram")
 		{
-		if(!ConsistencyManager.isConsistent(configname, modelType+"_training_sentences.txt"))
+		String source = modelType+"_training_sentences.txt";
+		if(ConsistencyManager.isStale(configname, "model/"+modelType+".lm", source)
+				|| ConsistencyManager.isStale(configname, "model/"+modelType+".dic", source))
 		{
-			ConfigCreator.createNgramModelFromExampleSentences(basepath+modelType+"_training_sentences.txt", configname, modelType);
+			ConfigCreator.createNgramModelFromExampleSentences(basepath+source, configname, modelType);
+			ConsistencyManager.recordArtifact(configname, "model/"+modelType+".lm", source);
+			ConsistencyManager.recordArtifact(configname, "model/"+modelType+".dic", source);
 		}
 		} else if(modelType == "docks_grammar"){
+		String source = "model/"+modelType+".gram";
+		if(ConsistencyManager.isStale(configname, "model/"+modelType+".dic", source))
+		{
 			ConfigCreator.updateGrammar(configname, modelType);
+			ConsistencyManager.recordArtifact(configname, "model/"+modelType+".dic", source);
+		}
 		} else{
 			throw new IllegalStateException("Unsupported model type: "
 					+ modelType);
 		}
-		//load config xml
-		try {
-			cm = new ConfigurationManager(new File(	basepath+modelType+".xml").toURI().toURL());
-		} catch (PropertyException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (MalformedURLException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
 		referenceRecognizer = -1;
-		
-		if(languageWeight != 0)
-			cm.setGlobalProperty("languageWeight", languageWeight+"");
-		if(wordInsertionProbability != 0)
-			cm.setGlobalProperty("wordInsertionProbability", wordInsertionProbability+"");
-		System.out.println("LW: "+getLanguageWeight()+" WIP: "+getWIP());
-		
-		//initialize frontend, recognizer and phoneme creator
-		pfe = (PhoneFrontEnd) cm.lookup("frontend");
-		pfe.setSubstitutionMethod(substitutionMethod);
-		
-		recognizer = (Recognizer) cm.lookup("recognizer");
-		recognizer.allocate();
+		this.poolSize = poolSize;
+		decoders = new ArrayBlockingQueue<Decoder>(poolSize);
+		//the phoneme creator is shared by all decoders, each decoder has its own converter
 		pc = new PhonemeCreator(basepath+"model/"+modelType+".vocab");
+		for(int i = 0; i < poolSize; i++)
+		{
+			//load config xml
+			Decoder decoder = new Decoder();
+			try {
+				decoder.cm = new ConfigurationManager(new File(	basepath+modelType+".xml").toURI().toURL());
+			} catch (PropertyException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			} catch (MalformedURLException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			}
+			
+			if(languageWeight != 0)
+				decoder.cm.setGlobalProperty("languageWeight", languageWeight+"");
+			if(wordInsertionProbability != 0)
+				decoder.cm.setGlobalProperty("wordInsertionProbability", wordInsertionProbability+"");
+			
+			//initialize frontend and recognizer
+			decoder.pfe = (PhoneFrontEnd) decoder.cm.lookup("frontend");
+			decoder.pfe.setSubstitutionMethod(substitutionMethod);
+			
+			decoder.recognizer = (Recognizer) decoder.cm.lookup("recognizer");
+			decoder.recognizer.allocate();
+			decoder.g2p = pc.createConverter();
+			decoders.add(decoder);
+			if(i == 0)
+			{
+				cm = decoder.cm;
+				System.out.println("LW: "+getLanguageWeight()+" WIP: "+getWIP());
+			}
+		}
 		this.cs = (ConfidenceScorer) cm.lookup("confidenceScorer");
 		//this.logMath = (LogMath) cm.lookup("logMath");
 
@@ -142,17 +220,161 @@ public class SphinxBasedPostProcessor  implements StandardRecognizer{
 	@Override
 	public Result recognizeFromResult(Result r)
 	{
-		//get phonemes
-		ArrayList<PhonemeContainer> phonemesSpeech = pc.getPhonemes(r);
-		
-		//get best result
-		String[] phonemes = phonemesSpeech.get(0).getPhonemes();
+		//wait for a free decoder
+		Decoder decoder;
+		try {
+			decoder = decoders.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		try {
+			//get phonemes
+			ArrayList<PhonemeContainer> phonemesSpeech = pc.getPhonemes(r, decoder.g2p);
+			
+			//get best result, nothing to decode if G2P failed
+			if(phonemesSpeech == null || phonemesSpeech.isEmpty())
+				return null;
+			String[] phonemes = phonemesSpeech.get(0).getPhonemes();
+			if(phonemes == null || phonemes.length == 0)
+				return null;
+			return decode(decoder, phonemes, null);
+		} finally {
+			decoders.add(decoder);
+		}
+	}
+
+	/**
+	 * postprocesses all hypotheses of the n-best list of a result and merges the sentences found by score
+	 * @param r result of an ASR like Google ASR
+	 * @return
+	 */
+	public Result recognizeNBestFromResult(Result r)
+	{
+		ArrayList<Result> results = new ArrayList<Result>();
+		results.add(r);
+		return recognizeFromResults(results).get(0);
+	}
+
+	/**
+	 * postprocesses many results at once. the hypotheses of all n-best lists are decoded in parallel by the pooled decoders,
+	 * the sentences found for each result are merged by score
+	 * @param results results of an ASR like Google ASR
+	 * @return the postprocessed results in the same order, null where nothing was found
+	 */
+	public ArrayList<Result> recognizeFromResults(List<Result> results)
+	{
+		ExecutorService workers = Executors.newFixedThreadPool(poolSize);
+		try {
+			//convert the n-best lists to phonemes with the converters of the pooled decoders
+			List<Future<ArrayList<PhonemeContainer>>> converted = new ArrayList<Future<ArrayList<PhonemeContainer>>>();
+			for (final Result r : results) {
+				converted.add(workers.submit(new Callable<ArrayList<PhonemeContainer>>() {
+					@Override
+					public ArrayList<PhonemeContainer> call() throws InterruptedException {
+						Decoder decoder = decoders.take();
+						try {
+							return pc.getPhonemes(r, decoder.g2p);
+						} finally {
+							decoders.add(decoder);
+						}
+					}
+				}));
+			}
+
+			//decode each distinct phoneme sequence of each n-best list once
+			List<List<Future<List<Hypothesis>>>> pending = new ArrayList<List<Future<List<Hypothesis>>>>();
+			for (Future<ArrayList<PhonemeContainer>> conversion : converted) {
+				ArrayList<PhonemeContainer> phonemesSpeech = conversion.get();
+				List<Future<List<Hypothesis>>> futures = new ArrayList<Future<List<Hypothesis>>>();
+				if (phonemesSpeech != null) {
+					Set<String> sequences = new HashSet<String>();
+					for (PhonemeContainer container : phonemesSpeech) {
+						final String[] phonemes = container.getPhonemes();
+						//G2P failed for this hypothesis
+						if (phonemes == null || phonemes.length == 0 || !sequences.add(Arrays.toString(phonemes)))
+							continue;
+						futures.add(workers.submit(new Callable<List<Hypothesis>>() {
+							@Override
+							public List<Hypothesis> call() throws InterruptedException {
+								List<Hypothesis> hypotheses = new ArrayList<Hypothesis>();
+								Decoder decoder = decoders.take();
+								try {
+									decode(decoder, phonemes, hypotheses);
+								} finally {
+									decoders.add(decoder);
+								}
+								return hypotheses;
+							}
+						}));
+					}
+				}
+				pending.add(futures);
+			}
 
+			ArrayList<Result> merged = new ArrayList<Result>();
+			for (List<Future<List<Hypothesis>>> futures : pending) {
+				List<Hypothesis> hypotheses = new ArrayList<Hypothesis>();
+				for (Future<List<Hypothesis>> future : futures)
+					hypotheses.addAll(future.get());
+				merged.add(merge(hypotheses));
+			}
+			return merged;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("postprocessing was interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("postprocessing failed", e.getCause());
+		} finally {
+			workers.shutdownNow();
+		}
+	}
+
+	/**
+	 * merges the sentences found for the hypotheses of one n-best list
+	 * @param hypotheses
+	 * @return a result with the 10 best distinct sentences, null if there are none
+	 */
+	private Result merge(List<Hypothesis> hypotheses)
+	{
+		if (hypotheses.isEmpty())
+			return null;
+		Collections.sort(hypotheses, new Comparator<Hypothesis>() {
+			@Override
+			public int compare(Hypothesis h1, Hypothesis h2) {
+				return Float.compare(h2.score, h1.score);
+			}
+		});
+		Result best = hypotheses.get(0).source;
+		Result r = new Result();
+		r.setRefPhoneme(best.getRefPhoneme());
+		r.setHypPhoneme(best.getHypPhoneme());
+		r.setConfidence(-1);
+		Set<String> added = new HashSet<String>();
+		for (Hypothesis hypothesis : hypotheses) {
+			if (added.size() >= 10)
+				break;
+			if (added.add(hypothesis.text))
+				r.addResult(hypothesis.text);
+		}
+		return r;
+	}
+
+	/**
+	 * postprocesses a phoneme sequence
+	 * @param decoder a decoder checked out from the pool
+	 * @param phonemes
+	 * @param hypotheses if not null, the sentences found are added here with their scores
+	 * @return
+	 */
+	private Result decode(Decoder decoder, String[] phonemes, List<Hypothesis> hypotheses)
+	{
 		//ad to phone frontend
-		pfe.addPhonemes(phonemes);
+		decoder.pfe.addPhonemes(phonemes);
 
 		//start postprocessing
-        r = null;
+		Result r = null;
+		Recognizer recognizer = decoder.recognizer;
         edu.cmu.sphinx.result.Result result;
         while ((result = recognizer.recognize())!= null) {
         		if(r == null)
@@ -189,6 +411,15 @@ public class SphinxBasedPostProcessor  implements StandardRecognizer{
                 if(resultText.equals(""))
                 	return null;
                 r.addResult(resultText);
+                if(hypotheses != null)
+                {
+                	Token best = result.getBestFinalToken();
+                	if(best == null)
+                		best = result.getBestToken();
+                	//a sentence without a token has no score to rank it by
+                	if(best != null)
+                		hypotheses.add(new Hypothesis(resultText, best.getScore()/phonemes.length, r));
+                }
 //                ConfidenceResult cr = cs.score(result);
 //                Path best = cr.getBestHypothesis();
 //                double logConfidence = best.getConfidence();
@@ -207,6 +438,8 @@ public class SphinxBasedPostProcessor  implements StandardRecognizer{
                 	if(i>=9)
                 		break;
                 	r.addResult(t.getWordPathNoFiller());
+                	if(hypotheses != null)
+                		hypotheses.add(new Hypothesis(t.getWordPathNoFiller(), t.getScore()/phonemes.length, r));
                 	i++;
                 }
                 
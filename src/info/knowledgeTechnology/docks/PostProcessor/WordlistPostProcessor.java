@@ -21,8 +21,16 @@
  */
 package info.knowledgeTechnology.docks.PostProcessor;
 import info.knowledgeTechnology.docks.Data.Result;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeContainer;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeCreator;
+import info.knowledgeTechnology.docks.Phoneme.PronunciationDictionary;
+import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.Levenshtein;
+import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.PhonemeTrie;
+import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.WordLexicon;
 import info.knowledgeTechnology.docks.Recognizer.StandardRecognizer;
 
+import java.util.ArrayList;
+
 /**
  * word list postprocessor using a list of words to postprocess a result word by word
  * @author 7twiefel
@@ -32,6 +40,9 @@ public class WordlistPostProcessor  implements StandardRecognizer{
 
 
 	private SentencelistPostProcessor lr;
+	private PhonemeCreator pc;
+	private WordLexicon lexicon;
+	private int numberOfResults;
 	private int referenceRecognizer;
 	private String name = "LexiconLookupRecognizer";
 	
@@ -54,6 +65,8 @@ public class WordlistPostProcessor  implements StandardRecognizer{
 		super();
 		//use a Sentencelist postprocessor internally
 		this.lr = new SentencelistPostProcessor(wordFile,1,key);
+		this.numberOfResults = 1;
+		createLexicon();
 		referenceRecognizer= -1;
 	}
 	
@@ -62,18 +75,91 @@ public class WordlistPostProcessor  implements StandardRecognizer{
 	 * @param wordFile path to word list
 	 */
 	public WordlistPostProcessor(String configname,String wordFile,int numberOfResults) {
+		this(configname,wordFile,numberOfResults,null);
+	}
+	
+	/**
+	 * create a new wordlist postprocessor in word mode
+	 * @param wordFile path to word list
+	 * @param dictionary pronunciations of single words, e.g. PronunciationDictionary.forConfig(configname, modelType). null converts words by G2P
+	 */
+	public WordlistPostProcessor(String configname,String wordFile,int numberOfResults,PronunciationDictionary dictionary) {
 		super();
 		//use a Sentencelist postprocessor internally
-		this.lr = new SentencelistPostProcessor(configname,wordFile,numberOfResults);
+		this.lr = new SentencelistPostProcessor(configname,wordFile,numberOfResults,dictionary);
+		this.numberOfResults = numberOfResults;
+		createLexicon();
 		referenceRecognizer= -1;
 	}
 	
+	/**
+	 * sorts the words of the word list into buckets for fast lookup
+	 */
+	private void createLexicon()
+	{
+		pc = lr.getPhonemeCreator();
+		lexicon = new WordLexicon(pc.pdb.arrayContent, new Levenshtein());
+	}
+	
 	/**
 	 * postprocess a result from another ASR
 	 * @param r the result
 	 */
 	@Override
 	public Result recognizeFromResult(Result r)
+	{
+		//more results per word are chosen by distance in the sentence list postprocessor
+		if (numberOfResults != 1)
+			return recognizeWordByWord(r);
+
+		//split the best result into words and get the phonemes of all words at once
+		Result words = new Result();
+		for (String s : r.getBestResult().split(" "))
+		{
+			s = s.replaceAll("[^a-zA-Z 0-9]", "");
+			if (!s.equals(""))
+				words.addResult(s);
+		}
+		int count = words.getResultList().size();
+		ArrayList<PhonemeContainer> phonemes = pc.getPhonemes(words);
+		//fall back if a word got lost during phoneme creation
+		if (count == 0 || phonemes == null || phonemes.size() != count)
+			return recognizeWordByWord(r);
+		//or if G2P found no phonemes for a word
+		for (PhonemeContainer word : phonemes)
+			if (word.getPhonemeIds() == null || word.getPhonemeIds().length == 0)
+				return recognizeWordByWord(r);
+
+		Result result = new Result();
+		String res = null;
+		
+		float confidence = 0.0f;
+		//match each word against the list of words
+		for (int i = 0; i < count; i++)
+		{
+			PhonemeTrie.Match match = lexicon.find(phonemes.get(i).getPhonemeIds());
+			//an empty word list has no word to replace it with
+			String best = match.sentence >= 0 ? pc.pdb.arrayContent.get(match.sentence).getResult()
+					: words.getResultList().get(i);
+			if(res==null)
+				res=best;
+			else
+				res=res+" "+best;
+			confidence+=match.confidence;
+		}
+		confidence /= phonemes.size();
+		result.addResult(res);
+		result.setConfidence(confidence);
+		
+		return result;
+	}
+	
+	/**
+	 * postprocess a result by passing every word through the sentence list postprocessor
+	 * @param r the result
+	 * @return
+	 */
+	private Result recognizeWordByWord(Result r)
 	{
 		//split the best result into words
 		Result result = new Result();
@@ -0,0 +1,147 @@
+package info.knowledgeTechnology.docks.Test.LevenshteinBased;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeAlphabet;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeSubstitution;
+import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.BitParallelLevenshtein;
+import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.EditDistance;
+import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.Levenshtein;
+import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.WeightedLevenshtein;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LevenshteinTest {
+
+	private static final String[] ROBOT = new String[]{"R", "OW", "B", "AA", "T"};
+	private static final String[] ROBOTS = new String[]{"R", "OW", "B", "AA", "T", "S"};
+	private static final String[] RABBIT = new String[]{"R", "AE", "B", "AH", "T"};
+
+	@Test
+	public void testEncode() {
+		byte[] ids = PhonemeAlphabet.encode(ROBOT);
+
+		assertEquals(ROBOT.length, ids.length);
+		assertEquals(0, PhonemeAlphabet.getId("SIL"));
+		assertEquals(PhonemeAlphabet.getId("B"), ids[2]);
+		assertArrayEquals(ROBOT, PhonemeAlphabet.decode(ids));
+	}
+
+	@Test
+	public void testDiffIdsEqualsDiffStrings() {
+		Levenshtein ls = new Levenshtein();
+
+		String[][] sequences = new String[][]{ROBOT, ROBOTS, RABBIT, new String[0]};
+		for (String[] a : sequences) {
+			for (String[] b : sequences) {
+				assertEquals(ls.diff(a, b),
+						ls.diff(PhonemeAlphabet.encode(a), PhonemeAlphabet.encode(b)));
+			}
+		}
+		assertEquals(0, ls.diff(PhonemeAlphabet.encode(ROBOT), PhonemeAlphabet.encode(ROBOT)));
+		assertEquals(1, ls.diff(PhonemeAlphabet.encode(ROBOT), PhonemeAlphabet.encode(ROBOTS)));
+		assertEquals(2, ls.diff(PhonemeAlphabet.encode(ROBOT), PhonemeAlphabet.encode(RABBIT)));
+	}
+
+	@Test
+	public void testDiffMatchesFullMatrix() {
+		Levenshtein ls = new Levenshtein();
+		Random random = new Random(42);
+
+		//lengths above 64 make the scratch rows grow
+		for (int n = 0; n < 200; n++) {
+			byte[] a = randomSequence(random, random.nextInt(150));
+			byte[] b = randomSequence(random, random.nextInt(150));
+			assertEquals(fullMatrixDiff(a, b), ls.diff(a, b));
+			assertEquals(fullMatrixDiff(a, b),
+					ls.diff(PhonemeAlphabet.decode(a), PhonemeAlphabet.decode(b)));
+		}
+	}
+
+	@Test
+	public void testBoundedDiff() {
+		Levenshtein ls = new Levenshtein();
+		Random random = new Random(7);
+
+		for (int n = 0; n < 2000; n++) {
+			byte[] a = randomSequence(random, random.nextInt(30));
+			byte[] b = randomSequence(random, random.nextInt(30));
+			int maxDistance = random.nextInt(35);
+			int distance = fullMatrixDiff(a, b);
+			assertEquals(distance <= maxDistance ? distance : maxDistance + 1,
+					ls.diff(a, b, maxDistance));
+		}
+	}
+
+	@Test
+	public void testBitParallelDiff() {
+		EditDistance ls = new BitParallelLevenshtein();
+		Random random = new Random(3);
+
+		//covers single word patterns and patterns of several blocks
+		for (int n = 0; n < 2000; n++) {
+			byte[] a = randomSequence(random, random.nextInt(n % 2 == 0 ? 70 : 200));
+			byte[] b = randomSequence(random, random.nextInt(n % 2 == 0 ? 70 : 200));
+			int maxDistance = random.nextInt(100);
+			int distance = fullMatrixDiff(a, b);
+			assertEquals(distance, ls.diff(a, b));
+			assertEquals(distance <= maxDistance ? distance : maxDistance + 1,
+					ls.diff(a, b, maxDistance));
+		}
+		assertEquals(2, ls.diff(PhonemeAlphabet.encode(ROBOT), PhonemeAlphabet.encode(RABBIT)));
+	}
+
+	@Test
+	public void testWeightedDiff() {
+		//the standard table scores all different phonemes alike, so every substitution costs 1
+		WeightedLevenshtein standard = new WeightedLevenshtein(
+				PhonemeSubstitution.getInstance(PhonemeSubstitution.STANDARD).getSubstitutionCosts());
+		Random random = new Random(11);
+
+		for (int n = 0; n < 500; n++) {
+			byte[] a = randomSequence(random, random.nextInt(80));
+			byte[] b = randomSequence(random, random.nextInt(80));
+			int distance = fullMatrixDiff(a, b);
+			assertEquals(distance, standard.diff(a, b), 0.0001f);
+			float maxDistance = random.nextInt(40) + 0.5f;
+			if (distance <= maxDistance)
+				assertEquals(distance, standard.diff(a, b, maxDistance), 0.0001f);
+			else
+				assertEquals(Float.POSITIVE_INFINITY, standard.diff(a, b, maxDistance), 0.0f);
+		}
+
+		//similar vowels are cheaper to substitute than a deletion and an insertion
+		WeightedLevenshtein ipa = new WeightedLevenshtein(
+				PhonemeSubstitution.getInstance(PhonemeSubstitution.IPA_TABLE).getSubstitutionCosts());
+		float distance = ipa.diff(PhonemeAlphabet.encode(ROBOT), PhonemeAlphabet.encode(RABBIT));
+		assertTrue(distance > 0.0f && distance < 2.0f);
+		assertEquals(1.0f, ipa.diff(PhonemeAlphabet.encode(ROBOT), PhonemeAlphabet.encode(ROBOTS)), 0.0001f);
+	}
+
+	static byte[] randomSequence(Random random, int length) {
+		byte[] sequence = new byte[length];
+		for (int i = 0; i < length; i++)
+			sequence[i] = (byte) random.nextInt(8);
+		return sequence;
+	}
+
+	static int fullMatrixDiff(byte[] reference, byte[] input) {
+		int[][] matrix = new int[reference.length + 1][input.length + 1];
+		for (int i = 0; i <= reference.length; i++)
+			matrix[i][0] = i;
+		for (int i = 0; i <= input.length; i++)
+			matrix[0][i] = i;
+		for (int a = 1; a <= reference.length; a++) {
+			for (int b = 1; b <= input.length; b++) {
+				int cost = reference[a - 1] == input[b - 1] ? 0 : 1;
+				matrix[a][b] = Math.min(Math.min(matrix[a - 1][b] + 1, matrix[a][b - 1] + 1),
+						matrix[a - 1][b - 1] + cost);
+			}
+		}
+		return matrix[reference.length][input.length];
+	}
+
+}
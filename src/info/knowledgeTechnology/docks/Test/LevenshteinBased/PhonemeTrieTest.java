@@ -0,0 +1,111 @@
+package info.knowledgeTechnology.docks.Test.LevenshteinBased;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeAlphabet;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeContainer;
+import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.Levenshtein;
+import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.PhonemeTrie;
+import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.TopKSelector;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PhonemeTrieTest {
+
+	private static ArrayList<PhonemeContainer> randomSentences(Random random, int count) {
+		String[] prefixes = new String[]{"", "R OW B AA T", "SH OW M IY", "R OW B AA T SH OW"};
+		String[] symbols = new String[]{"AA", "B", "K", "T", "S", "IY"};
+		ArrayList<PhonemeContainer> sentences = new ArrayList<PhonemeContainer>();
+		for (int j = 0; j < count; j++) {
+			StringBuilder phonemes = new StringBuilder(prefixes[random.nextInt(prefixes.length)]);
+			int length = random.nextInt(6);
+			for (int i = 0; i < length; i++)
+				phonemes.append(' ').append(symbols[random.nextInt(symbols.length)]);
+			PhonemeContainer pc = new PhonemeContainer(new String[]{"s" + j});
+			pc.addPhonemesNoJep(phonemes.toString().trim().split(" +"));
+			sentences.add(pc);
+		}
+		return sentences;
+	}
+
+	@Test
+	public void testFindBestMatchesScan() {
+		Random random = new Random(13);
+		Levenshtein ls = new Levenshtein();
+
+		for (int n = 0; n < 200; n++) {
+			ArrayList<PhonemeContainer> sentences = randomSentences(random, 1 + random.nextInt(200));
+			PhonemeTrie trie = new PhonemeTrie(sentences);
+			byte[][] speech = new byte[1 + random.nextInt(3)][];
+			for (int i = 0; i < speech.length; i++)
+				speech[i] = randomSentences(random, 1).get(0).getPhonemeIds();
+
+			//the loop of the sentence list postprocessor
+			float bestConfidence = -1.0f;
+			int result = -1;
+			for (int i = 0; i < speech.length; i++) {
+				for (int j = 0; j < sentences.size(); j++) {
+					byte[] grammar = sentences.get(j).getPhonemeIds();
+					float confidence = 1.0f - Math.min(1.0f, ((float) ls.diff(speech[i], grammar)) / grammar.length);
+					if (bestConfidence <= confidence) {
+						bestConfidence = confidence;
+						result = j;
+					}
+				}
+			}
+
+			PhonemeTrie.Match match = new PhonemeTrie.Match();
+			for (byte[] s : speech)
+				trie.findBest(s, match);
+			assertEquals(result, match.sentence);
+			assertEquals(bestConfidence, match.confidence, 0.0);
+		}
+	}
+
+	@Test
+	public void testFindTopKMatchesScan() {
+		Random random = new Random(17);
+		Levenshtein ls = new Levenshtein();
+
+		for (int n = 0; n < 200; n++) {
+			ArrayList<PhonemeContainer> sentences = randomSentences(random, 1 + random.nextInt(200));
+			PhonemeTrie trie = new PhonemeTrie(sentences);
+			byte[][] speech = new byte[1 + random.nextInt(3)][];
+			for (int i = 0; i < speech.length; i++)
+				speech[i] = randomSentences(random, 1).get(0).getPhonemeIds();
+			int k = 1 + random.nextInt(10);
+
+			TopKSelector expected = new TopKSelector(k);
+			TopKSelector actual = new TopKSelector(k);
+			for (int i = 0; i < speech.length; i++) {
+				for (int j = 0; j < sentences.size(); j++)
+					expected.offer(ls.diff(speech[i], sentences.get(j).getPhonemeIds()), j, i);
+				trie.findTopK(speech[i], i, actual);
+			}
+			assertArrayEquals(expected.getSentences(), actual.getSentences());
+			assertArrayEquals(expected.getDistances(), actual.getDistances());
+		}
+	}
+
+	@Test
+	public void testSharedPrefixes() {
+		ArrayList<PhonemeContainer> sentences = randomSentences(new Random(1), 0);
+		for (String s : new String[]{"R OW B AA T", "R OW B AA T S", "R OW B"}) {
+			PhonemeContainer pc = new PhonemeContainer(new String[]{s});
+			pc.addPhonemesNoJep(s.split(" "));
+			sentences.add(pc);
+		}
+		PhonemeTrie trie = new PhonemeTrie(sentences);
+
+		//root and one node per distinct prefix
+		assertEquals(7, trie.size());
+		PhonemeTrie.Match match = new PhonemeTrie.Match();
+		trie.findBest(PhonemeAlphabet.encode("R OW B AA T".split(" ")), match);
+		assertEquals(0, match.sentence);
+		assertEquals(1.0f, match.confidence, 0.0);
+	}
+
+}
@@ -0,0 +1,81 @@
+package info.knowledgeTechnology.docks.Test.LevenshteinBased;
+
+import static org.junit.Assert.assertEquals;
+import info.knowledgeTechnology.docks.Data.Result;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeContainer;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeCreator;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeDB;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeSubstitution;
+import info.knowledgeTechnology.docks.PostProcessor.SentencelistPostProcessor;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class SentencelistPostProcessorTest {
+
+	private static PhonemeContainer container(String words, String phonemes) {
+		PhonemeContainer pc = new PhonemeContainer(words.split(" "));
+		pc.addPhonemesNoJep(phonemes.split(" "));
+		return pc;
+	}
+
+	private static PhonemeCreator sentences() {
+		PhonemeDB pdb = new PhonemeDB();
+		pdb.arrayContent.add(container("robots", "R OW B AA T S"));
+		pdb.arrayContent.add(container("show me", "SH OW M IY"));
+		pdb.arrayContent.add(container("go back", "G OW B AE K"));
+		return new PhonemeCreator(pdb);
+	}
+
+	private static ArrayList<PhonemeContainer> hypothesis(String phonemes) {
+		ArrayList<PhonemeContainer> speech = new ArrayList<PhonemeContainer>();
+		speech.add(container("unknown", phonemes));
+		return speech;
+	}
+
+	@Test
+	public void testNoSharedNgram() {
+		SentencelistPostProcessor postProcessor = new SentencelistPostProcessor(sentences(), 1);
+		postProcessor.setShortlistSize(1);
+
+		//the scrambled hypothesis shares no bigram with any sentence, but is closest to the first one
+		Result r = postProcessor.recognizeFromPhonemes(hypothesis("OW R AA B S T"));
+		assertEquals("robots", r.getBestResult());
+
+		//a single phoneme has no bigram at all
+		r = postProcessor.recognizeFromPhonemes(hypothesis("AH"));
+		assertEquals(1, r.getResultList().size());
+
+		postProcessor.setSubstitutionMethod(PhonemeSubstitution.IPA_TABLE);
+		r = postProcessor.recognizeFromPhonemes(hypothesis("OW R AA B S T"));
+		assertEquals("robots", r.getBestResult());
+	}
+
+	@Test
+	public void testNoSharedNgramTopK() {
+		SentencelistPostProcessor postProcessor = new SentencelistPostProcessor(sentences(), 2);
+		postProcessor.setShortlistSize(1);
+
+		Result r = postProcessor.recognizeFromPhonemes(hypothesis("OW R AA B S T"));
+		assertEquals(2, r.getResultList().size());
+		assertEquals("robots", r.getBestResult());
+	}
+
+	@Test
+	public void testNoSharedNgramWithShortSentence() {
+		PhonemeCreator pc = sentences();
+		//a sentence shorter than the n-grams is on every shortlist
+		pc.pdb.arrayContent.add(container("a", "AH"));
+		SentencelistPostProcessor postProcessor = new SentencelistPostProcessor(pc, 1);
+		postProcessor.setShortlistSize(1);
+
+		//the short sentence must not be the only candidate
+		Result r = postProcessor.recognizeFromPhonemes(hypothesis("OW R AA B S T"));
+		assertEquals("robots", r.getBestResult());
+		//a hypothesis shorter than the n-grams is matched against all sentences as well
+		r = postProcessor.recognizeFromPhonemes(hypothesis("AH"));
+		assertEquals("a", r.getBestResult());
+	}
+
+}
@@ -0,0 +1,82 @@
+package info.knowledgeTechnology.docks.Test.LevenshteinBased;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.TopKSelector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TopKSelectorTest {
+
+	@Test
+	public void testOrderAndDedupe() {
+		TopKSelector selector = new TopKSelector(3);
+
+		assertTrue(selector.offer(5, 10, 0));
+		assertTrue(selector.offer(2, 11, 0));
+		assertTrue(selector.offer(7, 12, 0));
+		assertTrue(selector.isFull());
+		assertEquals(7, selector.getWorstDistance());
+
+		//sentence 10 matched better by another n-best entry
+		assertTrue(selector.offer(1, 10, 1));
+		//sentence 11 matched worse by another n-best entry
+		assertFalse(selector.offer(3, 11, 1));
+		//worse than all kept sentences
+		assertFalse(selector.offer(8, 13, 1));
+
+		assertArrayEquals(new int[]{10, 11, 12}, selector.getSentences());
+		assertArrayEquals(new int[]{1, 2, 7}, selector.getDistances());
+	}
+
+	@Test
+	public void testMatchesSortedList() {
+		Random random = new Random(11);
+
+		for (int n = 0; n < 500; n++) {
+			int k = 1 + random.nextInt(10);
+			int hypotheses = 1 + random.nextInt(5);
+			int sentences = 1 + random.nextInt(100);
+			int[][] distances = new int[hypotheses][sentences];
+			for (int i = 0; i < hypotheses; i++)
+				for (int j = 0; j < sentences; j++)
+					distances[i][j] = random.nextInt(20);
+
+			//two selectors over halves of the sentence list, merged
+			TopKSelector selector = new TopKSelector(k);
+			TopKSelector other = new TopKSelector(k);
+			int middle = sentences / 2;
+			for (int i = 0; i < hypotheses; i++)
+				for (int j = 0; j < sentences; j++)
+					(j < middle ? selector : other).offer(distances[i][j], j, i);
+			selector.addAll(other);
+
+			//sort all triples by distance, n-best index and sentence index, keep first hit per sentence
+			ArrayList<Long> all = new ArrayList<Long>();
+			for (int i = 0; i < hypotheses; i++)
+				for (int j = 0; j < sentences; j++)
+					all.add(((long) distances[i][j] << 40) | ((long) i << 20) | j);
+			Collections.sort(all);
+			ArrayList<Integer> expected = new ArrayList<Integer>();
+			HashSet<Integer> seen = new HashSet<Integer>();
+			for (long key : all) {
+				int sentence = (int) (key & 0xFFFFF);
+				if (expected.size() < k && seen.add(sentence))
+					expected.add(sentence);
+			}
+
+			int[] actual = selector.getSentences();
+			assertEquals(expected.size(), actual.length);
+			for (int i = 0; i < actual.length; i++)
+				assertEquals((int) expected.get(i), actual[i]);
+		}
+	}
+
+}
@@ -0,0 +1,57 @@
+package info.knowledgeTechnology.docks.Test.LevenshteinBased;
+
+import static org.junit.Assert.assertEquals;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeContainer;
+import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.Levenshtein;
+import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.PhonemeTrie;
+import info.knowledgeTechnology.docks.PostProcessor.LevenshteinBased.WordLexicon;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class WordLexiconTest {
+
+	private static PhonemeContainer randomWord(Random random) {
+		String[] symbols = new String[]{"AA", "B", "K", "T", "S", "IY", "R"};
+		String[] phonemes = new String[1 + random.nextInt(8)];
+		for (int i = 0; i < phonemes.length; i++)
+			phonemes[i] = symbols[random.nextInt(symbols.length)];
+		PhonemeContainer pc = new PhonemeContainer(new String[]{"w"});
+		pc.addPhonemesNoJep(phonemes);
+		return pc;
+	}
+
+	@Test
+	public void testFindMatchesScan() {
+		Random random = new Random(19);
+		Levenshtein ls = new Levenshtein();
+
+		for (int n = 0; n < 300; n++) {
+			ArrayList<PhonemeContainer> words = new ArrayList<PhonemeContainer>();
+			int count = 1 + random.nextInt(300);
+			for (int j = 0; j < count; j++)
+				words.add(randomWord(random));
+			WordLexicon lexicon = new WordLexicon(words, ls);
+			byte[] input = randomWord(random).getPhonemeIds();
+
+			//the loop of the sentence list postprocessor for a single word
+			float bestConfidence = -1.0f;
+			int result = -1;
+			for (int j = 0; j < words.size(); j++) {
+				byte[] word = words.get(j).getPhonemeIds();
+				float confidence = 1.0f - Math.min(1.0f, ((float) ls.diff(input, word)) / word.length);
+				if (bestConfidence <= confidence) {
+					bestConfidence = confidence;
+					result = j;
+				}
+			}
+
+			PhonemeTrie.Match match = lexicon.find(input);
+			assertEquals(result, match.sentence);
+			assertEquals(bestConfidence, match.confidence, 0.0);
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+package info.knowledgeTechnology.docks.Test.Phoneme;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeAlphabet;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeContainer;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeDB;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeDBFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+
+public class PhonemeDBFileTest {
+
+	private static PhonemeContainer container(String words, String phonemes) {
+		PhonemeContainer pc = new PhonemeContainer(words.split(" "));
+		pc.addPhonemesNoJep(phonemes.split(" "));
+		return pc;
+	}
+
+	private static File sentenceFile() throws IOException {
+		File source = File.createTempFile("sentences", ".txt");
+		source.deleteOnExit();
+		FileWriter out = new FileWriter(source);
+		out.write("robot\nshow me\n");
+		out.close();
+		return source;
+	}
+
+	@Test
+	public void testWriteAndMap() throws IOException {
+		File source = sentenceFile();
+		File binary = new File(source.getPath() + ".bin");
+		binary.deleteOnExit();
+
+		PhonemeDB pdb = new PhonemeDB();
+		pdb.arrayContent.add(container("robot", "R OW B AA T"));
+		pdb.arrayContent.add(container("show me", "SH OW M IY"));
+		//a symbol the alphabet did not know before
+		pdb.arrayContent.add(container("hello", "HH EH L OW_X"));
+		PhonemeDBFile.write(pdb, binary, source);
+
+		PhonemeDBFile file = new PhonemeDBFile(binary, source);
+		assertEquals(3, file.size());
+		//created in sentence mode
+		assertNull(file.getMode());
+		assertEquals("show me", file.getSentence(1));
+		assertEquals(4, file.getPhonemeLength(2));
+		assertArrayEquals(pdb.arrayContent.get(2).getPhonemeIds(), file.getPhonemeIds(2));
+
+		PhonemeDB loaded = file.toPhonemeDB();
+		assertEquals(3, loaded.arrayContent.size());
+		for (int i = 0; i < 3; i++) {
+			PhonemeContainer expected = pdb.arrayContent.get(i);
+			PhonemeContainer actual = loaded.arrayContent.get(i);
+			assertEquals(expected.getResult(), actual.getResult());
+			assertArrayEquals(expected.getPhonemeIds(), actual.getPhonemeIds());
+			assertArrayEquals(expected.getPhonemes(), actual.getPhonemes());
+		}
+		assertEquals("OW_X", PhonemeAlphabet.decode(loaded.arrayContent.get(2).getPhonemeIds())[3]);
+	}
+
+	@Test
+	public void testSkipsSentencesWithoutPhonemes() throws IOException {
+		File source = sentenceFile();
+		File binary = new File(source.getPath() + ".bin");
+		binary.deleteOnExit();
+
+		PhonemeDB pdb = new PhonemeDB();
+		pdb.arrayContent.add(container("robot", "R OW B AA T"));
+		//G2P found no phonemes
+		pdb.arrayContent.add(new PhonemeContainer("xyz".split(" ")));
+		PhonemeDBFile.write(pdb, binary, source);
+
+		PhonemeDBFile file = new PhonemeDBFile(binary, source);
+		assertEquals(1, file.size());
+		assertEquals("robot", file.toPhonemeDB().arrayContent.get(0).getResult());
+	}
+
+	@Test
+	public void testSerializeLoaded() throws IOException, ClassNotFoundException {
+		File source = sentenceFile();
+		File binary = new File(source.getPath() + ".bin");
+		binary.deleteOnExit();
+
+		PhonemeDB pdb = new PhonemeDB();
+		pdb.arrayContent.add(container("show me", "SH OW M IY"));
+		PhonemeDBFile.write(pdb, binary, source);
+
+		//containers read from the file are serialized with their words and phonemes
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(new PhonemeDBFile(binary, source).toPhonemeDB());
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		PhonemeContainer pc = ((PhonemeDB) in.readObject()).arrayContent.get(0);
+		assertEquals("show me", pc.getResult());
+		assertArrayEquals(new String[]{"show", "me"}, pc.getWords());
+		assertArrayEquals(pdb.arrayContent.get(0).getPhonemeIds(), pc.getPhonemeIds());
+	}
+
+	@Test
+	public void testOutdated() throws IOException {
+		File source = sentenceFile();
+		File binary = new File(source.getPath() + ".bin");
+		binary.deleteOnExit();
+
+		PhonemeDB pdb = new PhonemeDB();
+		pdb.arrayContent.add(container("robot", "R OW B AA T"));
+		PhonemeDBFile.write(pdb, binary, source);
+
+		FileWriter out = new FileWriter(source, true);
+		out.write("go back\n");
+		out.close();
+		try {
+			new PhonemeDBFile(binary, source);
+			fail("the sentence file has changed");
+		} catch (IOException e) {
+		}
+
+		//an outdated file can still be read to update it
+		PhonemeDBFile outdated = new PhonemeDBFile(binary);
+		assertFalse(outdated.isCurrent(source));
+		assertEquals("robot", outdated.getSentence(0));
+	}
+}
@@ -0,0 +1,67 @@
+package info.knowledgeTechnology.docks.Test.Phoneme;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeAlphabet;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeContainer;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeNgramIndex;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class PhonemeNgramIndexTest {
+
+	private static PhonemeContainer container(String phonemes) {
+		PhonemeContainer pc = new PhonemeContainer(new String[]{phonemes});
+		pc.addPhonemesNoJep(phonemes.split(" "));
+		return pc;
+	}
+
+	private static ArrayList<PhonemeContainer> sentences() {
+		ArrayList<PhonemeContainer> sentences = new ArrayList<PhonemeContainer>();
+		sentences.add(container("R OW B AA T"));           // robot
+		sentences.add(container("SH OW M IY"));            // show me
+		sentences.add(container("R OW B AA T S SH OW"));   // robots show
+		sentences.add(container("AH"));                    // a
+		sentences.add(container("G OW B AE K"));           // go back
+		return sentences;
+	}
+
+	@Test
+	public void testShortlist() {
+		PhonemeNgramIndex index = new PhonemeNgramIndex(sentences(), 2);
+		byte[] robot = PhonemeAlphabet.encode("R OW B AA T".split(" "));
+
+		//both robot sentences share 4 bigrams, the short sentence is always added
+		assertArrayEquals(new int[]{0, 2, 3}, index.shortlist(robot, 2));
+		//with one place left, the smaller index wins
+		assertArrayEquals(new int[]{0, 3}, index.shortlist(robot, 1));
+		//sentences sharing fewer bigrams fill up larger shortlists
+		assertArrayEquals(new int[]{0, 2, 3, 4}, index.shortlist(robot, 10));
+		//counts are reset between calls
+		assertArrayEquals(new int[]{0, 2, 3}, index.shortlist(robot, 2));
+	}
+
+	@Test
+	public void testNoSharedNgram() {
+		PhonemeNgramIndex index = new PhonemeNgramIndex(sentences(), 2);
+
+		//the short sentence alone is no shortlist
+		assertNull(index.shortlist(PhonemeAlphabet.encode("OW R AA B".split(" ")), 2));
+		assertNull(index.shortlist(PhonemeAlphabet.encode(new String[]{"AH"}), 2));
+	}
+
+	@Test
+	public void testMatches() {
+		ArrayList<PhonemeContainer> sentences = sentences();
+		PhonemeNgramIndex index = new PhonemeNgramIndex(sentences, 3);
+
+		assertTrue(index.matches(sentences));
+		sentences.add(container("HH EH L OW"));
+		assertFalse(index.matches(sentences));
+	}
+
+}
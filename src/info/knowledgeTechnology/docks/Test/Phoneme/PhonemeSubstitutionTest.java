@@ -0,0 +1,107 @@
+package info.knowledgeTechnology.docks.Test.Phoneme;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import info.knowledgeTechnology.docks.Data.PhoneData;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeAlphabet;
+import info.knowledgeTechnology.docks.Phoneme.PhonemeSubstitution;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import edu.cmu.sphinx.util.LogMath;
+
+public class PhonemeSubstitutionTest {
+
+	private static final String[] PHONEMES = new String[]{"SIL", "AA", "AH", "B", "T", "ZH"};
+
+	@Test
+	public void testLogScores() {
+		LogMath logMath = LogMath.getInstance();
+		for (int method : new int[]{PhonemeSubstitution.STANDARD, PhonemeSubstitution.IPA_TABLE}) {
+			PhonemeSubstitution substitution = PhonemeSubstitution.getInstance(method);
+			for (String p1 : PHONEMES) {
+				for (String p2 : PHONEMES) {
+					assertEquals(logMath.linearToLog(substitution.getScore(p1, p2)),
+							substitution.getLogScore(PhonemeAlphabet.getId(p1), PhonemeAlphabet.getId(p2)), 0.0001f);
+				}
+			}
+			//phonemes outside the table get the lowest score
+			assertEquals(logMath.linearToLog(0.1),
+					substitution.getLogScore(PhonemeAlphabet.getId("AA"), PhonemeAlphabet.getId("NOT_A_PHONEME")), 0.0001f);
+		}
+	}
+
+	@Test
+	public void testPhoneDataScores() {
+		PhonemeSubstitution substitution = PhonemeSubstitution.getInstance(PhonemeSubstitution.IPA_TABLE);
+		for (String p1 : PHONEMES) {
+			PhoneData data = new PhoneData(p1, PhonemeSubstitution.IPA_TABLE);
+			for (String p2 : PHONEMES) {
+				float expected = substitution.getLogScore(PhonemeAlphabet.getId(p1), PhonemeAlphabet.getId(p2));
+				assertEquals(expected, data.getConfusionScore(PhonemeAlphabet.getId(p2)), 0.0f);
+				assertEquals(expected, data.getConfusionScore(p2, 0), 0.0f);
+			}
+		}
+	}
+
+	@Test
+	public void testConcurrentGetInstance() throws InterruptedException {
+		final PhonemeSubstitution[] results = new PhonemeSubstitution[8];
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < results.length; t++) {
+			final int index = t;
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					results[index] = PhonemeSubstitution.getInstance(PhonemeSubstitution.STANDARD);
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		for (PhonemeSubstitution result : results)
+			assertSame(PhonemeSubstitution.getInstance(PhonemeSubstitution.STANDARD), result);
+		assertSame(PhonemeSubstitution.getInstance(PhonemeSubstitution.IPA_TABLE), PhonemeSubstitution.getInstance("ipa"));
+		assertNull(PhonemeSubstitution.getInstance(42));
+		assertNull(PhonemeSubstitution.getInstance("unknown"));
+	}
+
+	@Test
+	public void testSaveLoadAndRegister() throws IOException {
+		File file = File.createTempFile("substitution", ".scores");
+		file.deleteOnExit();
+		PhonemeSubstitution ipa = PhonemeSubstitution.getInstance(PhonemeSubstitution.IPA_TABLE);
+		ipa.save(file.getPath());
+
+		PhonemeSubstitution loaded = PhonemeSubstitution.load(file.getPath());
+		for (String p1 : PHONEMES)
+			for (String p2 : PHONEMES)
+				assertEquals(ipa.getScore(p1, p2), loaded.getScore(p1, p2), 0.0);
+
+		int method = PhonemeSubstitution.register("custom", loaded);
+		assertSame(loaded, PhonemeSubstitution.getInstance(method));
+		assertSame(loaded, PhonemeSubstitution.getInstance("custom"));
+		//registering a name again keeps its method
+		assertEquals(method, PhonemeSubstitution.register("custom", ipa));
+		assertSame(ipa, PhonemeSubstitution.getInstance("custom"));
+	}
+
+	@Test
+	public void testRegisterBuiltIn() {
+		PhonemeSubstitution ipa = PhonemeSubstitution.getInstance(PhonemeSubstitution.IPA_TABLE);
+		try {
+			PhonemeSubstitution.register("ipa", PhonemeSubstitution.getInstance(PhonemeSubstitution.STANDARD));
+			fail("built-in tables cannot be replaced");
+		} catch (IllegalArgumentException e) {
+		}
+		assertSame(ipa, PhonemeSubstitution.getInstance("ipa"));
+	}
+}
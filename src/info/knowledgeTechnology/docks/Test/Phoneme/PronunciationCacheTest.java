@@ -0,0 +1,98 @@
+package info.knowledgeTechnology.docks.Test.Phoneme;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import info.knowledgeTechnology.docks.Phoneme.PronunciationCache;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class PronunciationCacheTest {
+
+	private static final String[] ROBOT = new String[]{"R", "OW", "B", "AA", "T"};
+	private static final String[] GO = new String[]{"G", "OW"};
+	private static final String[] BACK = new String[]{"B", "AE", "K"};
+
+	@Test
+	public void testHitsAndMisses() {
+		PronunciationCache cache = new PronunciationCache(10);
+
+		assertNull(cache.get("robot"));
+		cache.put("robot", ROBOT);
+		assertArrayEquals(ROBOT, cache.get("robot"));
+		assertArrayEquals(ROBOT, cache.get("robot"));
+
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHits());
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() {
+		PronunciationCache cache = new PronunciationCache(2);
+
+		cache.put("robot", ROBOT);
+		cache.put("go", GO);
+		//robot is used more recently than go
+		cache.get("robot");
+		cache.put("back", BACK);
+
+		assertEquals(2, cache.size());
+		assertArrayEquals(ROBOT, cache.get("robot"));
+		assertArrayEquals(BACK, cache.get("back"));
+		assertNull(cache.get("go"));
+	}
+
+	@Test
+	public void testSegmentsAddUpToCapacity() {
+		PronunciationCache cache = new PronunciationCache(1000);
+
+		for (int i = 0; i < 5000; i++)
+			cache.put("word" + i, GO);
+		assertTrue(cache.size() <= 1000);
+		assertTrue(cache.size() > 900);
+		//the most recently added word is never evicted
+		assertArrayEquals(GO, cache.get("word4999"));
+	}
+
+	@Test
+	public void testDisabled() {
+		PronunciationCache cache = new PronunciationCache(0);
+
+		cache.put("robot", ROBOT);
+		assertNull(cache.get("robot"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testConcurrentAccess() throws InterruptedException {
+		final PronunciationCache cache = new PronunciationCache(50);
+
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 10000; i++) {
+						String key = "word" + (i % 100);
+						if (cache.get(key) == null)
+							cache.put(key, GO);
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+
+		assertEquals(50, cache.size());
+		assertEquals(40000, cache.getHits() + cache.getMisses());
+	}
+}
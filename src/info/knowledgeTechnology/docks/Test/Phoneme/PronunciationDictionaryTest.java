@@ -0,0 +1,54 @@
+package info.knowledgeTechnology.docks.Test.Phoneme;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import info.knowledgeTechnology.docks.Phoneme.PronunciationDictionary;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class PronunciationDictionaryTest {
+
+	@Test
+	public void testReadDictionary() throws IOException {
+		File file = File.createTempFile("pronunciations", ".dic");
+		file.deleteOnExit();
+		FileWriter out = new FileWriter(file);
+		out.write(";;; comment\n");
+		out.write("Robot\tR OW B AA T\n");
+		out.write("robot(2)\tR OW B AH T\n");
+		out.write("back  B AE1 K\n");
+		out.write("\n");
+		out.close();
+
+		PronunciationDictionary dictionary = new PronunciationDictionary(file.getPath());
+
+		assertEquals(2, dictionary.size());
+		assertArrayEquals(new String[]{"R", "OW", "B", "AA", "T"}, dictionary.get("robot"));
+		assertArrayEquals(new String[]{"B", "AE", "K"}, dictionary.get("back"));
+		assertNull(dictionary.get("go"));
+
+		dictionary.add("Go", new String[]{"G", "OW"});
+		assertArrayEquals(new String[]{"G", "OW"}, dictionary.get("go"));
+	}
+
+	@Test
+	public void testFingerprint() {
+		PronunciationDictionary dictionary1 = new PronunciationDictionary();
+		dictionary1.add("robot", new String[]{"R", "OW", "B", "AA", "T"});
+		dictionary1.add("go", new String[]{"G", "OW"});
+		PronunciationDictionary dictionary2 = new PronunciationDictionary();
+		dictionary2.add("go", new String[]{"G", "OW"});
+		dictionary2.add("robot", new String[]{"R", "OW", "B", "AA", "T"});
+
+		//the order words are added in does not matter
+		assertEquals(dictionary1.getFingerprint(), dictionary2.getFingerprint());
+		dictionary2.add("robot", new String[]{"R", "OW", "B", "AH", "T"});
+		assertFalse(dictionary1.getFingerprint().equals(dictionary2.getFingerprint()));
+	}
+}
@@ -0,0 +1,68 @@
+package info.knowledgeTechnology.docks.Test.SphinxBased;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import info.knowledgeTechnology.docks.PostProcessor.SphinxBased.CompiledGrammar;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.cmu.sphinx.linguist.acoustic.UnitManager;
+import edu.cmu.sphinx.linguist.dictionary.Pronunciation;
+import edu.cmu.sphinx.linguist.dictionary.Word;
+import edu.cmu.sphinx.linguist.language.grammar.GrammarNode;
+
+public class CompiledGrammarTest {
+
+	//initial -> word -> final
+	private static List<GrammarNode> grammar(String spelling, float probability) {
+		GrammarNode initial = new GrammarNode(0, new Word[0][]);
+		GrammarNode word = new GrammarNode(1, new Word[][]{{new Word(spelling, new Pronunciation[0], false)}});
+		GrammarNode last = new GrammarNode(2, new Word[0][]);
+		last.setFinalNode(true);
+		initial.add(word, probability);
+		word.add(last, 0);
+		return Arrays.asList(initial, word, last);
+	}
+
+	@Test
+	public void testSharedByContent() {
+		int before = CompiledGrammar.size();
+		List<GrammarNode> nodes1 = grammar("robot", -1);
+		List<GrammarNode> nodes2 = grammar("robot", -1);
+		List<GrammarNode> nodes3 = grammar("robot", -2);
+
+		CompiledGrammar grammar1 = CompiledGrammar.attach(nodes1.get(0), nodes1);
+		CompiledGrammar grammar2 = CompiledGrammar.attach(nodes2.get(0), nodes2);
+		CompiledGrammar grammar3 = CompiledGrammar.attach(nodes3.get(0), nodes3);
+		assertSame(grammar1, grammar2);
+		assertSame(nodes1.get(0), grammar2.getInitialNode());
+		assertTrue(grammar1 != grammar3);
+		assertEquals(before + 2, CompiledGrammar.size());
+
+		assertArrayEquals(new int[]{UnitManager.SILENCE.getBaseID()}, grammar1.getNextUnits(nodes1.get(1)));
+		assertTrue(grammar1.getUnitSet(nodes1.get(2)).contains(UnitManager.SILENCE));
+
+		grammar1.release();
+		assertEquals(before + 2, CompiledGrammar.size());
+		grammar2.release();
+		grammar3.release();
+		assertEquals(before, CompiledGrammar.size());
+	}
+
+	@Test
+	public void testInitialNodeIsHashed() {
+		List<GrammarNode> nodes = grammar("robot", -1);
+		CompiledGrammar grammar1 = CompiledGrammar.attach(nodes.get(0), nodes);
+		CompiledGrammar grammar2 = CompiledGrammar.attach(nodes.get(1), nodes);
+		assertTrue(grammar1 != grammar2);
+		assertTrue(!grammar1.getHash().equals(grammar2.getHash()));
+		grammar1.release();
+		grammar2.release();
+	}
+
+}
@@ -0,0 +1,136 @@
+package info.knowledgeTechnology.docks.Test.SphinxBased;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import info.knowledgeTechnology.docks.PostProcessor.SphinxBased.SuccessorCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.cmu.sphinx.linguist.SearchState;
+import edu.cmu.sphinx.linguist.SearchStateArc;
+import edu.cmu.sphinx.linguist.WordSequence;
+
+public class SuccessorCacheTest {
+
+	private static class TestState implements SearchState {
+		private final int id;
+
+		TestState(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public SearchStateArc[] getSuccessors() {
+			return new SearchStateArc[0];
+		}
+
+		@Override
+		public boolean isEmitting() {
+			return false;
+		}
+
+		@Override
+		public boolean isFinal() {
+			return false;
+		}
+
+		@Override
+		public String toPrettyString() {
+			return getSignature();
+		}
+
+		@Override
+		public String getSignature() {
+			return "state " + id;
+		}
+
+		@Override
+		public WordSequence getWordHistory() {
+			return null;
+		}
+
+		@Override
+		public Object getLexState() {
+			return null;
+		}
+
+		@Override
+		public int getOrder() {
+			return 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return id;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof TestState && ((TestState) o).id == id;
+		}
+	}
+
+	@Test
+	public void testHitsAndMisses() {
+		SuccessorCache cache = new SuccessorCache(100);
+		SearchStateArc[] arcs = new SearchStateArc[0];
+		assertNull(cache.get(new TestState(1)));
+		cache.put(new TestState(1), arcs);
+		assertSame(arcs, cache.get(new TestState(1)));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHits());
+	}
+
+	@Test
+	public void testBounded() {
+		SuccessorCache cache = new SuccessorCache(160);
+		for (int i = 0; i < 10000; i++)
+			cache.put(new TestState(i), new SearchStateArc[0]);
+		assertTrue(cache.size() <= 160);
+		assertTrue(cache.isFull());
+		assertEquals(10000 - cache.size(), cache.getEvictions());
+		//the most recently added states are kept
+		assertTrue(cache.get(new TestState(9999)) != null);
+	}
+
+	@Test
+	public void testDisabled() {
+		SuccessorCache cache = new SuccessorCache(0);
+		cache.put(new TestState(1), new SearchStateArc[0]);
+		assertNull(cache.get(new TestState(1)));
+	}
+
+	@Test
+	public void testConcurrentAccess() throws InterruptedException {
+		final SuccessorCache cache = new SuccessorCache(1000);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			final int offset = t * 500;
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 20000; i++) {
+						TestState state = new TestState(offset + i % 700);
+						if (cache.get(state) == null)
+							cache.put(state, new SearchStateArc[0]);
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		assertTrue(cache.size() <= 1000);
+		assertEquals(80000, cache.getHits() + cache.getMisses());
+	}
+
+}
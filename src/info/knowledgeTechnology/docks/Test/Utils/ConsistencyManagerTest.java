@@ -0,0 +1,66 @@
+package info.knowledgeTechnology.docks.Test.Utils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import info.knowledgeTechnology.docks.Utils.ConsistencyManager;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class ConsistencyManagerTest {
+
+	private static final String CONFIG = "consistency_manager_test";
+
+	private static void write(String filename, String content) throws IOException {
+		FileWriter out = new FileWriter("config/" + CONFIG + "/" + filename);
+		out.write(content);
+		out.close();
+	}
+
+	@Test
+	public void testArtifacts() throws IOException {
+		File folder = new File("config/" + CONFIG);
+		folder.mkdirs();
+		try {
+			write("sentences.txt", "robot\n");
+
+			//the artifact does not exist yet
+			assertTrue(ConsistencyManager.isStale(CONFIG, "sentences.txt.bin", "sentences.txt"));
+			write("sentences.txt.bin", "phonemes");
+			//it exists, but was not recorded
+			assertTrue(ConsistencyManager.isStale(CONFIG, "sentences.txt.bin", "sentences.txt"));
+			ConsistencyManager.recordArtifact(CONFIG, "sentences.txt.bin", "sentences.txt");
+			assertFalse(ConsistencyManager.isStale(CONFIG, "sentences.txt.bin", "sentences.txt"));
+
+			//rewriting the same content does not make the artifact stale
+			write("sentences.txt", "robot\n");
+			assertFalse(ConsistencyManager.isStale(CONFIG, "sentences.txt.bin", "sentences.txt"));
+
+			write("sentences.txt", "robot\ngo back\n");
+			assertTrue(ConsistencyManager.isStale(CONFIG, "sentences.txt.bin", "sentences.txt"));
+		} finally {
+			FileUtils.deleteDirectory(folder);
+		}
+	}
+
+	@Test
+	public void testIsConsistent() throws IOException {
+		File folder = new File("config/" + CONFIG);
+		folder.mkdirs();
+		try {
+			write("sentences.txt", "robot\n");
+
+			assertFalse(ConsistencyManager.isConsistent(CONFIG, "sentences.txt"));
+			assertTrue(ConsistencyManager.isConsistent(CONFIG, "sentences.txt"));
+			write("sentences.txt", "go back\n");
+			assertFalse(ConsistencyManager.isConsistent(CONFIG, "sentences.txt"));
+			assertTrue(ConsistencyManager.isConsistent(CONFIG, "sentences.txt"));
+		} finally {
+			FileUtils.deleteDirectory(folder);
+		}
+	}
+}
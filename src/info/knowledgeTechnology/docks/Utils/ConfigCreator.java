@@ -30,6 +30,7 @@ import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FilenameFilter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
@@ -96,6 +97,31 @@ public class ConfigCreator {
 		
 		System.out.println("Sentence file deleted: "+Boolean.toString(sentenceFileDeleted)); 
 				System.out.println("Word file deleted: "+Boolean.toString(wordFileDeleted));
+		//the binary data bases and their n-gram indices are outdated as well
+		removeBinaryFiles("config/"+configname, configname+".sentences");
+		removeBinaryFiles("config/"+configname, configname+".words");
+	}
+
+	/**
+	 * deletes the binary phoneme data base of a list (&lt;list&gt;.bin) and its n-gram indices (&lt;list&gt;.&lt;n&gt;gram.idx)
+	 * @param folder
+	 * @param list file name of the list
+	 */
+	private static void removeBinaryFiles(String folder, final String list)
+	{
+		File[] files = new File(folder).listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.equals(list+".bin") || (name.startsWith(list+".") && name.endsWith("gram.idx"));
+			}
+		});
+		if(files==null)
+			return;
+		for(File f : files)
+		{
+			System.out.println("deleting: "+f.getPath());
+			f.delete();
+		}
 	}
 
 	public static void createDefaultSentenceList(String configname)
@@ -2,79 +2,193 @@ package info.knowledgeTechnology.docks.Utils;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.MessageDigest;
+import java.util.Properties;
+
 import org.apache.commons.io.FileUtils;
 
+/**
+ * keeps track of changes of the files of a config. a manifest (config/&lt;name&gt;/.manifest) stores
+ * size, modification time and SHA-256 hash of each tracked file, so a file is only read again
+ * if its size or modification time changed. it also stores the hash of the source file each
+ * derived artifact (.bin, .lm, .gram, .dic) was created from
+ */
 public class ConsistencyManager {
 
-	private static void copyFile(File source, File dest) {
-		if (source.exists() && !source.isDirectory()) {
+	private static final String MANIFEST = ".manifest";
+	private static final String FILE = "file.";
+	private static final String ARTIFACT = "artifact.";
+
+	private static Properties load(String configname) {
+		Properties manifest = new Properties();
+		File file = new File("config/"+configname+"/"+MANIFEST);
+		if (file.exists()) {
 			InputStream is = null;
-			OutputStream os = null;
 			try {
-				is = new FileInputStream(source);
-				os = new FileOutputStream(dest);
-				byte[] buffer = new byte[1024];
-				int length;
-				while ((length = is.read(buffer)) > 0) {
-					os.write(buffer, 0, length);
-				}
-			} catch (FileNotFoundException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				is = new FileInputStream(file);
+				manifest.load(is);
 			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				System.err.println(e);
 			} finally {
 				try {
 					is.close();
-					os.close();
-				} catch (IOException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
+				} catch (Exception e) {
 				}
-
 			}
 		}
+		return manifest;
 	}
 
-	public static boolean isConsistent(String configname, String filename)
-	{
-		String backupPath = "config/"+configname+"/.backup/";
-		String filePath = "config/"+configname+"/";
-		boolean consistent = true;
-		
-		if(!(new File(backupPath)).exists())
-			(new File(backupPath)).mkdirs();
-		if(!(new File(backupPath+"model")).exists())
-			(new File(backupPath+"model")).mkdirs();
-		
-		File backupFile = new File(backupPath+filename);
-		File orgFile = new File(filePath+filename);
-		if(!backupFile.exists())
-		{
-			consistent = false;
-			
-		}else{
+	private static void store(String configname, Properties manifest) {
+		File file = new File("config/"+configname+"/"+MANIFEST);
+		File temp = new File("config/"+configname+"/"+MANIFEST+".tmp");
+		OutputStream os = null;
+		try {
+			os = new FileOutputStream(temp);
+			manifest.store(os, "DOCKS file manifest: size;modification time;SHA-256");
+			os.close();
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.err.println(e);
+		} finally {
 			try {
-				consistent = FileUtils.contentEquals(orgFile, backupFile);
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				os.close();
+			} catch (Exception e) {
 			}
-			
 		}
+	}
+
+	private static String hash(File file) throws IOException {
+		MessageDigest digest = Hashing.sha256();
+		InputStream is = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[65536];
+			int length;
+			while ((length = is.read(buffer)) > 0)
+				digest.update(buffer, 0, length);
+		} finally {
+			is.close();
+		}
+		return Hashing.toHex(digest);
+	}
+
+	/**
+	 * returns the current hash of a file of the config. the file is only hashed if its size or
+	 * modification time differ from the ones in the manifest, the manifest is updated then
+	 * @param manifest
+	 * @param configname
+	 * @param filename path relative to the config folder
+	 * @return the hash, or null if the file does not exist
+	 */
+	private static String currentHash(Properties manifest, String configname, String filename) {
+		File file = new File("config/"+configname+"/"+filename);
+		if (!file.exists())
+			return null;
+		String stamp = file.length()+";"+file.lastModified()+";";
+		String entry = manifest.getProperty(FILE+filename);
+		if (entry != null && entry.startsWith(stamp))
+			return entry.substring(stamp.length());
+		try {
+			String hash = hash(file);
+			manifest.setProperty(FILE+filename, stamp+hash);
+			return hash;
+		} catch (IOException e) {
+			System.err.println(e);
+			return null;
+		}
+	}
+
+	/**
+	 * configs created before the manifest keep a copy of each checked file in .backup
+	 * @param configname
+	 * @param filename path relative to the config folder
+	 * @return true if the file equals its copy
+	 */
+	private static boolean matchesBackup(String configname, String filename) {
+		File backupFile = new File("config/"+configname+"/.backup/"+filename);
+		if (!backupFile.exists())
+			return false;
+		try {
+			return FileUtils.contentEquals(new File("config/"+configname+"/"+filename), backupFile);
+		} catch (IOException e) {
+			System.err.println(e);
+			return false;
+		}
+	}
+
+	/**
+	 * checks if a file of the config has changed since the last call
+	 * @param configname
+	 * @param filename path relative to the config folder
+	 * @return false if the file has changed or is checked for the first time
+	 */
+	public static synchronized boolean isConsistent(String configname, String filename)
+	{
+		Properties manifest = load(configname);
+		Properties loaded = (Properties) manifest.clone();
+		String key = ARTIFACT+filename+"#"+filename;
+		String previous = manifest.getProperty(key);
+		String current = currentHash(manifest, configname, filename);
+		boolean consistent = current != null
+				&& (current.equals(previous) || (previous == null && matchesBackup(configname, filename)));
+
+		if (current != null)
+			manifest.setProperty(key, current);
+		if (!manifest.equals(loaded))
+			store(configname, manifest);
 		if(!consistent)
-		{
 			System.out.println("file "+filename+" was changed");
-			copyFile(orgFile, backupFile);
-		}else
+		else
 			System.out.println("file "+filename+" is consistent");
 		return consistent;
 	}
+
+	/**
+	 * checks if an artifact has to be created again, because it is missing
+	 * or its source file has changed since it was created
+	 * @param configname
+	 * @param artifact path of the artifact relative to the config folder, e.g. model/docks_ngram.lm
+	 * @param source path of the source file relative to the config folder
+	 * @return true if the artifact is stale
+	 */
+	public static synchronized boolean isStale(String configname, String artifact, String source)
+	{
+		Properties manifest = load(configname);
+		Properties loaded = (Properties) manifest.clone();
+		String current = currentHash(manifest, configname, source);
+		String key = ARTIFACT+artifact+"#"+source;
+		boolean exists = (new File("config/"+configname+"/"+artifact)).exists();
+		if (exists && current != null && manifest.getProperty(key) == null && matchesBackup(configname, source))
+			manifest.setProperty(key, current);
+		if (!manifest.equals(loaded))
+			store(configname, manifest);
+		boolean stale = !exists || current == null || !current.equals(manifest.getProperty(key));
+		if (stale)
+			System.out.println(artifact+" is outdated");
+		return stale;
+	}
+
+	/**
+	 * records that an artifact was created from the current version of its source file
+	 * @param configname
+	 * @param artifact path of the artifact relative to the config folder
+	 * @param source path of the source file relative to the config folder
+	 */
+	public static synchronized void recordArtifact(String configname, String artifact, String source)
+	{
+		Properties manifest = load(configname);
+		Properties loaded = (Properties) manifest.clone();
+		String current = currentHash(manifest, configname, source);
+		if (current != null)
+			manifest.setProperty(ARTIFACT+artifact+"#"+source, current);
+		if (!manifest.equals(loaded))
+			store(configname, manifest);
+	}
 }